@@ -0,0 +1,34 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+
+import java.util.Arrays;
+
+/**
+ * A reactive stage that encrypts or decrypts a stream of character chunks as one message.
+ * Chunks received are only read, and every chunk emitted is a new array.
+ * @author Brian Haggard
+ */
+public class ChunkCipherProcessor extends CipherProcessor<char[]> {
+
+    /**
+     * Creates a stage that ciphers with a copy of the deck, restored to its original order
+     * @param deck                  Deck of cards to use in cryptography functions
+     * @param ring                  Ring used to encrypt or decrypt each letter
+     * @param keystreamLookahead    most keystream values generated ahead of time, 0 for none
+     */
+    public ChunkCipherProcessor(Deck deck, Ring ring, int keystreamLookahead) {
+        super(deck, ring, keystreamLookahead);
+    }
+
+    @Override
+    protected char[] toChars(char[] item) {
+        return item;
+    }
+
+    @Override
+    protected char[] fromChars(char[] chars, int length) {
+        return Arrays.copyOf(chars, length);
+    }
+}
@@ -0,0 +1,246 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+
+import java.util.concurrent.Flow;
+
+/**
+ * A reactive stage that encrypts or decrypts a stream of message parts as one message.
+ * The deck is carried from one item to the next, so the items emitted, joined together,
+ * are exactly what Solitaire produces for the items joined together: letters are scrubbed,
+ * grouped in fives across item boundaries, and the last group is padded with X's when the
+ * upstream completes.
+ *
+ * Each item received produces one item downstream, so demand is passed straight upstream
+ * and nothing is queued. The padding, when there is any, is one extra item that waits for
+ * demand. Whenever demand arrives the cipher also generates up to the configured number of
+ * keystream values ahead of time on the requesting thread, so they are ready before the
+ * items that use them.
+ *
+ * Supports a single subscriber. Signals are serialized with this stage's lock, which is held
+ * while the subscriber's onNext runs.
+ * @param <T> type of the message parts
+ * @author Brian Haggard
+ */
+public abstract class CipherProcessor<T> implements Flow.Processor<T, T>, Flow.Subscription {
+    /**
+     * Cipher holding the deck state between items
+     */
+    private final StreamingCipher cipher;
+
+    /**
+     * Most keystream values generated ahead of time
+     */
+    private final int keystreamLookahead;
+
+    /**
+     * Buffer the ciphered characters of an item are written to
+     */
+    private char[] output;
+
+    /**
+     * Subscription to the upstream publisher
+     */
+    private Flow.Subscription upstream;
+
+    /**
+     * The subscriber items are emitted to
+     */
+    private Flow.Subscriber<? super T> downstream;
+
+    /**
+     * Number of items requested by the subscriber and not yet emitted
+     */
+    private long demand;
+
+    /**
+     * Demand requested before the upstream subscription arrived
+     */
+    private long unforwardedDemand;
+
+    /**
+     * Ciphered padding waiting for demand after the upstream completed
+     */
+    private T padding;
+
+    /**
+     * True once the upstream has completed
+     */
+    private boolean completed;
+
+    /**
+     * Error the upstream failed with before there was a subscriber
+     */
+    private Throwable error;
+
+    /**
+     * True once a terminal signal has been sent or the subscription was cancelled
+     */
+    private boolean done;
+
+    /**
+     * Creates a stage that ciphers with a copy of the deck, restored to its original order
+     * @param deck                  Deck of cards to use in cryptography functions
+     * @param ring                  Ring used to encrypt or decrypt each letter
+     * @param keystreamLookahead    most keystream values generated ahead of time, 0 for none
+     */
+    protected CipherProcessor(Deck deck, Ring ring, int keystreamLookahead) {
+        if (keystreamLookahead < 0) {
+            throw new IllegalArgumentException("Keystream lookahead must not be negative");
+        }
+        this.cipher = new StreamingCipher(deck.copy(), ring);
+        this.keystreamLookahead = keystreamLookahead;
+        this.output = new char[cipher.maximumPaddingLength()];
+    }
+
+    /**
+     * Returns the characters of an item
+     * @param item    message part
+     * @return        its characters, which are not modified
+     */
+    protected abstract char[] toChars(T item);
+
+    /**
+     * Creates an item from ciphered characters
+     * @param chars     buffer holding the ciphered characters, reused after this returns
+     * @param length    number of characters
+     * @return          the ciphered message part
+     */
+    protected abstract T fromChars(char[] chars, int length);
+
+    public synchronized void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Cipher processor already has a subscriber"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(this);
+        if (error != null) {
+            done = true;
+            subscriber.onError(error);
+        } else if (completed) {
+            deliverCompletion();
+        }
+    }
+
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null || done) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        if (unforwardedDemand > 0) {
+            long requested = unforwardedDemand;
+            unforwardedDemand = 0;
+            subscription.request(requested);
+        }
+    }
+
+    public synchronized void onNext(T item) {
+        if (item == null) {
+            throw new NullPointerException("Items must not be null");
+        }
+        if (done) {
+            return;
+        }
+        char[] input = toChars(item);
+        int required = cipher.maximumOutputLength(input.length);
+        if (required > output.length) {
+            output = new char[required];
+        }
+        int length = cipher.update(input, 0, input.length, output, 0);
+        demand--;
+        downstream.onNext(fromChars(output, length));
+    }
+
+    public synchronized void onError(Throwable throwable) {
+        if (done) {
+            return;
+        }
+        if (downstream == null) {
+            error = throwable;
+            return;
+        }
+        done = true;
+        downstream.onError(throwable);
+    }
+
+    public synchronized void onComplete() {
+        if (done || completed) {
+            return;
+        }
+        completed = true;
+        int length = cipher.finish(output, 0);
+        if (length > 0) {
+            padding = fromChars(output, length);
+        }
+        if (downstream != null) {
+            deliverCompletion();
+        }
+    }
+
+    public synchronized void request(long n) {
+        if (done) {
+            return;
+        }
+        if (n <= 0) {
+            cancel();
+            downstream.onError(new IllegalArgumentException("Requested " + n + " items, must be positive"));
+            return;
+        }
+        demand = addDemand(demand, n);
+        if (completed) {
+            deliverCompletion();
+            return;
+        }
+        if (upstream != null) {
+            upstream.request(n);
+        } else {
+            unforwardedDemand = addDemand(unforwardedDemand, n);
+        }
+        cipher.prefetch(keystreamLookahead);
+    }
+
+    public synchronized void cancel() {
+        done = true;
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+
+    /**
+     * Emits any padding and completes the subscriber, unless the padding is waiting for demand
+     */
+    private void deliverCompletion() {
+        if (padding != null) {
+            if (demand == 0) {
+                return;
+            }
+            demand--;
+            T lastItem = padding;
+            padding = null;
+            downstream.onNext(lastItem);
+        }
+        done = true;
+        downstream.onComplete();
+    }
+
+    /**
+     * Adds to a demand count, capping it at Long.MAX_VALUE as the reactive streams rules require
+     * @param demand    current demand
+     * @param n         number of items requested
+     * @return          the new demand
+     */
+    private static long addDemand(long demand, long n) {
+        long sum = demand + n;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
@@ -0,0 +1,31 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+
+/**
+ * A reactive stage that encrypts or decrypts a stream of strings as one message
+ * @author Brian Haggard
+ */
+public class MessageCipherProcessor extends CipherProcessor<String> {
+
+    /**
+     * Creates a stage that ciphers with a copy of the deck, restored to its original order
+     * @param deck                  Deck of cards to use in cryptography functions
+     * @param ring                  Ring used to encrypt or decrypt each letter
+     * @param keystreamLookahead    most keystream values generated ahead of time, 0 for none
+     */
+    public MessageCipherProcessor(Deck deck, Ring ring, int keystreamLookahead) {
+        super(deck, ring, keystreamLookahead);
+    }
+
+    @Override
+    protected char[] toChars(String item) {
+        return item.toCharArray();
+    }
+
+    @Override
+    protected String fromChars(char[] chars, int length) {
+        return new String(chars, 0, length);
+    }
+}
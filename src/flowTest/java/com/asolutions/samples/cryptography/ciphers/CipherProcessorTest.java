@@ -0,0 +1,147 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+
+public class CipherProcessorTest {
+
+    private Deck deck;
+    private Solitaire solitaire;
+
+    @Before
+    public void setUp() throws Exception {
+        deck = new Deck();
+        deck.shuffle();
+        solitaire = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing());
+    }
+
+    @Test
+    public void testJoinedItemsMatchSolitaire() throws Exception {
+        String[] parts = {"Meet me ", "at the", "", " usual place, ", "at ten", "!"};
+        StringBuilder message = new StringBuilder();
+        for (String part : parts) {
+            message.append(part);
+        }
+
+        for (int lookahead : new int[]{0, 3, 100}) {
+            MessageCipherProcessor encrypter = new MessageCipherProcessor(deck, new EncoderRing(), lookahead);
+            CollectingSubscriber<String> subscriber = new CollectingSubscriber<String>(Long.MAX_VALUE);
+            SubmissionPublisher<String> publisher = new SubmissionPublisher<String>();
+            publisher.subscribe(encrypter);
+            encrypter.subscribe(subscriber);
+            for (String part : parts) {
+                publisher.submit(part);
+            }
+            publisher.close();
+
+            assertTrue(subscriber.completion.await(10, TimeUnit.SECONDS));
+            assertNull(subscriber.error);
+            assertEquals(parts.length + 1, subscriber.items.size());
+            assertEquals(solitaire.encrypt(message.toString()), join(subscriber.items));
+        }
+    }
+
+    @Test
+    public void testChunksDecryptToTheSameMessageAsSolitaire() throws Exception {
+        String encrypted = solitaire.encrypt("The quick brown fox jumps over the lazy dog");
+        ChunkCipherProcessor decrypter = new ChunkCipherProcessor(deck, new DecoderRing(), 16);
+        CollectingSubscriber<char[]> subscriber = new CollectingSubscriber<char[]>(Long.MAX_VALUE);
+        SubmissionPublisher<char[]> publisher = new SubmissionPublisher<char[]>();
+        publisher.subscribe(decrypter);
+        decrypter.subscribe(subscriber);
+        for (int i = 0; i < encrypted.length(); i += 7) {
+            publisher.submit(encrypted.substring(i, Math.min(i + 7, encrypted.length())).toCharArray());
+        }
+        publisher.close();
+
+        assertTrue(subscriber.completion.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        StringBuilder decrypted = new StringBuilder();
+        for (char[] chunk : subscriber.items) {
+            decrypted.append(chunk);
+        }
+        assertEquals(solitaire.decrypt(encrypted), decrypted.toString());
+    }
+
+    @Test
+    public void testItemsAreOnlyEmittedOnDemand() throws Exception {
+        MessageCipherProcessor encrypter = new MessageCipherProcessor(deck, new EncoderRing(), 10);
+        CollectingSubscriber<String> subscriber = new CollectingSubscriber<String>(2);
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<String>();
+        publisher.subscribe(encrypter);
+        encrypter.subscribe(subscriber);
+        publisher.submit("ABC");
+        publisher.submit("DEF");
+        publisher.submit("GHI");
+        publisher.close();
+
+        Thread.sleep(200);
+        assertNull(subscriber.error);
+        assertEquals(2, subscriber.items.size());
+        assertEquals(1, subscriber.completion.getCount());
+
+        subscriber.subscription.request(1);
+        Thread.sleep(200);
+        assertNull(subscriber.error);
+        assertEquals(3, subscriber.items.size());
+        assertEquals(1, subscriber.completion.getCount());
+
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.completion.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(solitaire.encrypt("ABCDEFGHI"), join(subscriber.items));
+    }
+
+    private static String join(List<String> items) {
+        StringBuilder joined = new StringBuilder();
+        for (String item : items) {
+            joined.append(item);
+        }
+        return joined.toString();
+    }
+
+    private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+        private final long initialRequest;
+        private final List<T> items = new ArrayList<T>();
+        private final CountDownLatch completion = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        public synchronized void onNext(T item) {
+            items.add(item);
+        }
+
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completion.countDown();
+        }
+
+        public void onComplete() {
+            completion.countDown();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite with the GC profiler so that allocation rates are reported
+ * alongside throughput. An optional argument is a regular expression selecting benchmarks.
+ * Include the src/vector classes and run on JDK 16 or later with
+ * --add-modules jdk.incubator.vector to measure the vector rings.
+ * @author Brian Haggard
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com\\.asolutions\\.samples\\.cryptography\\.ciphers\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,51 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of scrubbing and grouping messages of different sizes before they are ciphered
+ * @author Brian Haggard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormattingBenchmark {
+
+    /**
+     * Number of characters in the unformatted message, from 5 characters to 10 MB
+     */
+    @Param({"5", "100", "10000", "1000000", "10000000"})
+    private int messageLength;
+
+    private Solitaire solitaire;
+    private String message;
+
+    @Setup
+    public void setUp() {
+        solitaire = new Solitaire(new Deck(), new DecoderRing(), new EncoderRing());
+        message = SolitaireBenchmark.buildMessage(messageLength);
+    }
+
+    @Benchmark
+    public String formatMessage() {
+        return solitaire.formatMessage(message);
+    }
+}
@@ -0,0 +1,97 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.VectorRings;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmarks of encrypting and decrypting messages of different sizes. Formatting
+ * alone does not depend on the keystream or the rings and is measured by {@link FormattingBenchmark}.
+ * @author Brian Haggard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolitaireBenchmark {
+
+    /**
+     * Number of characters in the unformatted message, from 5 characters to 10 MB
+     */
+    @Param({"5", "100", "10000", "1000000", "10000000"})
+    private int messageLength;
+
+    /**
+     * How the cipher is set up: the deck stepped for every message with the table-driven
+     * rings, a keystream cache with the table-driven rings, or a keystream cache with the
+     * vector rings. The vector rings are only used with a cached keystream, so they are not
+     * measured with a stepped deck, and they fall back to tables when the Vector API is missing.
+     */
+    @Param({"stepped", "cached", "cachedVector"})
+    private String cipher;
+
+    private Solitaire solitaire;
+    private String message;
+    private String encryptedMessage;
+
+    @Setup
+    public void setUp() {
+        Deck deck = new Deck();
+        deck.shuffle();
+        if ("stepped".equals(cipher)) {
+            solitaire = new Solitaire(deck, new DecoderRing(), new EncoderRing());
+        } else {
+            boolean vector = "cachedVector".equals(cipher);
+            Ring decoderRing = vector ? VectorRings.decoder() : new DecoderRing();
+            Ring encoderRing = vector ? VectorRings.encoder() : new EncoderRing();
+            solitaire = new Solitaire(deck, decoderRing, encoderRing, new KeystreamCache(Integer.MAX_VALUE));
+        }
+        message = buildMessage(messageLength);
+        encryptedMessage = solitaire.encrypt(message);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return solitaire.encrypt(message);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return solitaire.decrypt(encryptedMessage);
+    }
+
+    /**
+     * Builds a message of mixed case letters, spaces and punctuation
+     * @param length    number of characters in the message
+     * @return          the message
+     */
+    static String buildMessage(int length) {
+        Random random = new Random(length);
+        String characters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ  .,!";
+        StringBuilder sb = new StringBuilder(length);
+        sb.append('a');
+        while (sb.length() < length) {
+            sb.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.asolutions.samples.cryptography.ciphers.crackerjackprizes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of applying a block of keystream with the table-driven and vector rings.
+ * Forks with the jdk.incubator.vector module, so it needs JDK 16 or later.
+ * @author Brian Haggard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RingBenchmark {
+
+    @Param({"64", "4096", "1048576"})
+    private int length;
+
+    @Param({"table", "vector"})
+    private String ring;
+
+    private Ring encoderRing;
+    private Ring decoderRing;
+    private char[] letters;
+    private byte[] keystream;
+    private char[] out;
+
+    @Setup
+    public void setUp() {
+        boolean vector = "vector".equals(ring);
+        encoderRing = vector ? VectorRings.encoder() : new EncoderRing();
+        decoderRing = vector ? VectorRings.decoder() : new DecoderRing();
+        Random random = new Random(length);
+        letters = new char[length];
+        keystream = new byte[length];
+        out = new char[length];
+        for (int i = 0; i < length; i++) {
+            letters[i] = (char) ('A' + random.nextInt(26));
+            keystream[i] = (byte) (random.nextInt(52) + 1);
+        }
+    }
+
+    @Benchmark
+    public char[] encode() {
+        encoderRing.cipher(letters, keystream, out);
+        return out;
+    }
+
+    @Benchmark
+    public char[] decode() {
+        decoderRing.cipher(letters, keystream, out);
+        return out;
+    }
+}
@@ -0,0 +1,109 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the individual deck manipulations used to generate keystream
+ * @author Brian Haggard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeckBenchmark {
+
+    private Deck deck;
+    private Card card;
+    private Card jokerA;
+    private Card jokerB;
+    private byte[] key;
+    private byte[] compactKey;
+    private byte[] keystream = new byte[1024];
+
+    @Setup
+    public void setUp() {
+        deck = new Deck();
+        deck.shuffle();
+        card = deck.getCards().get(20);
+        jokerA = Card.valueOf(Suit.JOKER_A, Rank.JOKER);
+        jokerB = Card.valueOf(Suit.JOKER_B, Rank.JOKER);
+        key = deck.toKey();
+        compactKey = deck.toCompactKey();
+    }
+
+    @Benchmark
+    public Deck moveCardDown() {
+        deck.moveCardDown(card);
+        return deck;
+    }
+
+    @Benchmark
+    public Deck tripleCut() {
+        deck.tripleCut(jokerA, jokerB);
+        return deck;
+    }
+
+    @Benchmark
+    public Deck bottomValueCut() {
+        deck.bottomValueCut();
+        return deck;
+    }
+
+    @Benchmark
+    public Card getNextCard() {
+        return deck.getNextCard();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public byte[] generateKeystream() {
+        deck.generateKeystream(keystream, 0, keystream.length);
+        return keystream;
+    }
+
+    @Benchmark
+    public Deck restore() {
+        deck.restore();
+        return deck;
+    }
+
+    @Benchmark
+    public Deck shuffle() {
+        deck.shuffle();
+        return deck;
+    }
+
+    @Benchmark
+    public byte[] toKey() {
+        return deck.toKey();
+    }
+
+    @Benchmark
+    public Deck fromKey() {
+        return Deck.fromKey(key);
+    }
+
+    @Benchmark
+    public byte[] toCompactKey() {
+        return deck.toCompactKey();
+    }
+
+    @Benchmark
+    public Deck fromCompactKey() {
+        return Deck.fromCompactKey(compactKey);
+    }
+}
@@ -0,0 +1,222 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Keystream;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamPad;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Reusable cipher for a single key and direction that writes into buffers supplied by the caller.
+ * Every message is ciphered from the start of the keystream, the same as
+ * {@link Solitaire#encrypt(String)} or {@link Solitaire#decrypt(String)}, but once the context's
+ * scratch buffers have grown to the longest message seen, ciphering allocates nothing.
+ *
+ * A context is not thread safe; give each thread its own.
+ * @author Brian Haggard
+ */
+public class CipherContext {
+    /**
+     * Deck whose original order produces the keystream, owned by this context
+     */
+    private final Deck deck;
+
+    /**
+     * Ring used to encrypt or decrypt each letter
+     */
+    private final Ring ring;
+
+    /**
+     * Cache the keystream is taken from, or null to step the deck for every message
+     */
+    private final KeystreamCache keystreamCache;
+
+    /**
+     * Precomputed keystream read instead of the cache or the deck, or null
+     */
+    private final KeystreamPad keystreamPad;
+
+    /**
+     * How messages are grouped and padded
+     */
+    private final FormattingPolicy formattingPolicy;
+
+    /**
+     * Keystream last taken from the cache, kept so that shorter messages do not go back to the cache
+     */
+    private Keystream keystream;
+
+    /**
+     * Keystream values for the message being ciphered
+     */
+    private byte[] keystreamValues = new byte[0];
+
+    /**
+     * Formatted message, for outputs that are not backed by a char array
+     */
+    private char[] scratch = new char[0];
+
+    /**
+     * Creates a context
+     * @param deck                Deck whose original order is the key, copied so the caller's deck is never stepped
+     * @param ring                Ring used to encrypt or decrypt each letter
+     * @param keystreamCache      Cache the keystream is taken from, or null to step the deck for every message
+     * @param formattingPolicy    How messages are grouped and padded
+     */
+    public CipherContext(Deck deck, Ring ring, KeystreamCache keystreamCache, FormattingPolicy formattingPolicy) {
+        this(deck, ring, keystreamCache, null, formattingPolicy);
+    }
+
+    /**
+     * Creates a context that reads its keystream from a precomputed pad
+     * @param deck                Deck whose original order is the key, copied so the caller's deck is never stepped
+     * @param ring                Ring used to encrypt or decrypt each letter
+     * @param keystreamCache      Cache the keystream is taken from, or null to step the deck for every message
+     * @param keystreamPad        Pad made from the deck's original order, read in preference to the cache, or null
+     * @param formattingPolicy    How messages are grouped and padded
+     */
+    public CipherContext(Deck deck, Ring ring, KeystreamCache keystreamCache, KeystreamPad keystreamPad, FormattingPolicy formattingPolicy) {
+        if (keystreamPad != null && !keystreamPad.isFor(deck)) {
+            throw new IllegalArgumentException("Keystream pad was made from a different deck");
+        }
+        this.deck = deck.copy();
+        this.ring = ring;
+        this.keystreamCache = keystreamCache;
+        this.keystreamPad = keystreamPad;
+        this.formattingPolicy = formattingPolicy;
+    }
+
+    /**
+     * Largest number of characters ciphering a message of the given length can write
+     * @param length    number of characters in the message
+     * @return          size the output buffer needs
+     */
+    public int maximumLength(int length) {
+        return formattingPolicy.maximumLength(length);
+    }
+
+    /**
+     * Formats and ciphers a message into an array. A CharBuffer message is read from its
+     * position to its limit and its position is left unchanged.
+     * @param message    message to cipher
+     * @param out        array the ciphered message is written to, with room for
+     *                   {@link #maximumLength(int)} characters from the offset
+     * @param offset     position of the first character to write
+     * @return           number of characters written
+     */
+    public int cipher(CharSequence message, char[] out, int offset) {
+        int length = formattingPolicy.format(message, out, offset);
+        cipherFormatted(out, offset, length);
+        return length;
+    }
+
+    /**
+     * Formats and ciphers a message into a buffer, advancing its position past the characters written
+     * @param message    message to cipher
+     * @param out        buffer the ciphered message is written to
+     * @return           number of characters written
+     * @throws BufferOverflowException  if the buffer has fewer than {@link #maximumLength(int)} characters remaining
+     */
+    public int cipher(CharSequence message, CharBuffer out) {
+        int maximumLength = maximumLength(message.length());
+        if (out.remaining() < maximumLength) {
+            throw new BufferOverflowException();
+        }
+        if (out.hasArray()) {
+            int length = cipher(message, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + length);
+            return length;
+        }
+        char[] chars = scratch(maximumLength);
+        int length = cipher(message, chars, 0);
+        out.put(chars, 0, length);
+        return length;
+    }
+
+    /**
+     * Formats and ciphers a message into a buffer as ASCII bytes, advancing its position past
+     * the bytes written
+     * @param message    message to cipher
+     * @param out        buffer the ciphered message is written to
+     * @return           number of bytes written
+     * @throws BufferOverflowException  if the buffer has fewer than {@link #maximumLength(int)} bytes remaining
+     */
+    public int cipher(CharSequence message, ByteBuffer out) {
+        int maximumLength = maximumLength(message.length());
+        if (out.remaining() < maximumLength) {
+            throw new BufferOverflowException();
+        }
+        char[] chars = scratch(maximumLength);
+        int length = cipher(message, chars, 0);
+        if (out.hasArray()) {
+            byte[] bytes = out.array();
+            int position = out.arrayOffset() + out.position();
+            for (int i = 0; i < length; i++) {
+                bytes[position + i] = (byte) chars[i];
+            }
+            out.position(out.position() + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                out.put((byte) chars[i]);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Ciphers a formatted message in place, one group of letters at a time
+     * @param chars     formatted message
+     * @param offset    position of the first character of the message
+     * @param length    number of characters in the message
+     */
+    private void cipherFormatted(char[] chars, int offset, int length) {
+        int groupSize = formattingPolicy.getGroupSize();
+        boolean separateGroups = formattingPolicy.isSeparateGroups();
+        int letterCount = separateGroups ? length - length / (groupSize + 1) : length;
+        byte[] values = keystream(letterCount);
+        int run = separateGroups ? groupSize : letterCount;
+        int stride = separateGroups ? groupSize + 1 : letterCount;
+        for (int position = offset, letter = 0; letter < letterCount; position += stride, letter += run) {
+            ring.cipher(chars, position, values, letter, chars, position, run);
+        }
+    }
+
+    /**
+     * Fills the keystream buffer with the first values of the keystream
+     * @param length    number of keystream values needed
+     * @return          buffer holding at least length values
+     */
+    private byte[] keystream(int length) {
+        if (length > keystreamValues.length) {
+            keystreamValues = new byte[Math.max(length, keystreamValues.length * 2)];
+        }
+        if (keystreamPad != null) {
+            keystreamPad.getValues(0, keystreamValues, 0, length);
+        } else if (keystreamCache == null) {
+            deck.restore();
+            deck.generateKeystream(keystreamValues, 0, length);
+        } else {
+            if (keystream == null || keystream.length() < length) {
+                keystream = keystreamCache.getKeystream(deck, length);
+            }
+            keystream.getValues(0, keystreamValues, 0, length);
+        }
+        return keystreamValues;
+    }
+
+    /**
+     * Returns the scratch buffer, grown to at least the given length
+     * @param length    number of characters needed
+     * @return          the scratch buffer
+     */
+    private char[] scratch(int length) {
+        if (length > scratch.length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+        return scratch;
+    }
+}
@@ -0,0 +1,243 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encrypts or decrypts one logical message that arrives in chunks. The session keeps its
+ * place in the keystream and in the current group between calls to update, and finish pads
+ * the last group, so the output of all the calls together is the same as ciphering the whole
+ * message at once.
+ *
+ * A snapshot of a session records the deck's current order rather than just its position,
+ * so a transfer can be resumed after a crash without stepping the deck again from the start
+ * of the keystream.
+ *
+ * A session is not thread safe.
+ * @author Brian Haggard
+ */
+public class CipherSession {
+    /**
+     * Identifies a session snapshot
+     */
+    private static final int MAGIC = 0x53455353;
+
+    /**
+     * Version of the snapshot layout
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes in a snapshot: magic, version, flags, pad letter, group size, letter count,
+     * original deck order and current deck order
+     */
+    private static final int SNAPSHOT_SIZE = 132;
+
+    /**
+     * Number of cards in a deck
+     */
+    private static final int DECK_SIZE = 54;
+
+    /**
+     * Deck stepped by this session, a copy owned by it
+     */
+    private final Deck deck;
+
+    /**
+     * True if the session encrypts, false if it decrypts
+     */
+    private final boolean encrypt;
+
+    /**
+     * How the output is grouped and padded
+     */
+    private final FormattingPolicy formattingPolicy;
+
+    /**
+     * Cipher holding the position in the current group
+     */
+    private final StreamingCipher cipher;
+
+    /**
+     * Set once the last group has been padded
+     */
+    private boolean finished;
+
+    /**
+     * Starts a session at the beginning of the keystream
+     * @param deck                Deck whose original order is the key, copied so the caller's deck is never stepped
+     * @param ring                Ring used to encrypt or decrypt each letter
+     * @param encrypt             True if the ring encrypts, false if it decrypts
+     * @param formattingPolicy    How the output is grouped and padded
+     */
+    CipherSession(Deck deck, Ring ring, boolean encrypt, FormattingPolicy formattingPolicy) {
+        this(deck.copy(), ring, encrypt, formattingPolicy, 0, false);
+    }
+
+    /**
+     * Creates a session around a deck that is already positioned
+     * @param deck                Deck owned by the session, positioned at the keystream value for the next letter
+     * @param ring                Ring used to encrypt or decrypt each letter
+     * @param encrypt             True if the ring encrypts, false if it decrypts
+     * @param formattingPolicy    How the output is grouped and padded
+     * @param letters             Number of letters already ciphered
+     * @param finished            True if the last group has already been padded
+     */
+    private CipherSession(Deck deck, Ring ring, boolean encrypt, FormattingPolicy formattingPolicy, long letters, boolean finished) {
+        this.deck = deck;
+        this.encrypt = encrypt;
+        this.formattingPolicy = formattingPolicy;
+        this.cipher = new StreamingCipher(deck, ring, formattingPolicy, letters);
+        this.finished = finished;
+    }
+
+    /**
+     * Resumes a session from a snapshot
+     * @param snapshot       bytes written by {@link #snapshot()}
+     * @param deck           deck whose original order the session was started with
+     * @param decoderRing    ring used if the session decrypts
+     * @param encoderRing    ring used if the session encrypts
+     * @return               a session that carries on where the snapshot was taken
+     * @throws IllegalArgumentException  if the bytes are not a snapshot or the session was started with a different deck
+     */
+    static CipherSession restore(byte[] snapshot, Deck deck, Ring decoderRing, Ring encoderRing) {
+        ByteBuffer in = ByteBuffer.wrap(snapshot);
+        if (snapshot.length != SNAPSHOT_SIZE || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IllegalArgumentException("Not a cipher session snapshot");
+        }
+        boolean encrypt = in.get() != 0;
+        boolean finished = in.get() != 0;
+        boolean separateGroups = in.get() != 0;
+        char padLetter = (char) in.get();
+        int groupSize = in.getInt();
+        long letters = in.getLong();
+        byte[] originalOrder = new byte[DECK_SIZE];
+        byte[] state = new byte[DECK_SIZE];
+        in.get(originalOrder);
+        in.get(state);
+        if (!Arrays.equals(originalOrder, deck.toKey())) {
+            throw new IllegalArgumentException("Cipher session was started with a different deck");
+        }
+        Deck resumedDeck = deck.copy();
+        resumedDeck.restoreState(state, letters);
+        FormattingPolicy formattingPolicy = new FormattingPolicy(groupSize, padLetter, separateGroups);
+        return new CipherSession(resumedDeck, encrypt ? encoderRing : decoderRing, encrypt, formattingPolicy, letters, finished);
+    }
+
+    /**
+     * Largest number of characters update can write for the given number of input characters
+     * @param length    number of input characters
+     * @return          size the output buffer needs
+     */
+    public int maximumOutputLength(int length) {
+        return cipher.maximumOutputLength(length);
+    }
+
+    /**
+     * Largest number of characters finish can write
+     * @return    size the output buffer needs for the padding
+     */
+    public int maximumPaddingLength() {
+        return cipher.maximumPaddingLength();
+    }
+
+    /**
+     * Scrubs and ciphers the next chunk of the message
+     * @param in           message characters
+     * @param offset       position of the first character to read
+     * @param length       number of characters to read
+     * @param out          buffer the ciphered characters are written to, with room for
+     *                     {@link #maximumOutputLength(int)} characters from outOffset
+     * @param outOffset    position of the first character to write
+     * @return             number of characters written
+     * @throws IllegalStateException  if the session has been finished
+     */
+    public int update(char[] in, int offset, int length, char[] out, int outOffset) {
+        checkNotFinished();
+        return cipher.update(in, offset, length, out, outOffset);
+    }
+
+    /**
+     * Scrubs and ciphers the next chunk of the message
+     * @param chunk    next part of the message
+     * @return         the ciphered chunk, which may start with a space separating it from the previous chunk's last group
+     * @throws IllegalStateException  if the session has been finished
+     */
+    public String update(String chunk) {
+        char[] out = new char[maximumOutputLength(chunk.length())];
+        return new String(out, 0, update(chunk.toCharArray(), 0, chunk.length(), out, 0));
+    }
+
+    /**
+     * Pads and ciphers the last group of the message, ending the session
+     * @param out          buffer the ciphered padding is written to, with room for
+     *                     {@link #maximumPaddingLength()} characters from outOffset
+     * @param outOffset    position of the first character to write
+     * @return             number of characters written
+     * @throws IllegalStateException  if the session has already been finished
+     */
+    public int finish(char[] out, int outOffset) {
+        checkNotFinished();
+        finished = true;
+        return cipher.finish(out, outOffset);
+    }
+
+    /**
+     * Pads and ciphers the last group of the message, ending the session
+     * @return    the ciphered padding
+     * @throws IllegalStateException  if the session has already been finished
+     */
+    public String finish() {
+        char[] out = new char[maximumPaddingLength()];
+        return new String(out, 0, finish(out, 0));
+    }
+
+    /**
+     * Number of letters ciphered so far, which is also the session's position in the keystream
+     * @return    the number of letters
+     */
+    public long getPosition() {
+        return cipher.getLetters();
+    }
+
+    /**
+     * Whether the last group has been padded
+     * @return    true if finish has been called
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Records the state of the session, to be resumed later with Solitaire.resumeSession.
+     * The snapshot holds the key, so it must be kept as secret as the key itself.
+     * @return    132 bytes describing the session
+     */
+    public byte[] snapshot() {
+        ByteBuffer out = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.put((byte) (encrypt ? 1 : 0));
+        out.put((byte) (finished ? 1 : 0));
+        out.put((byte) (formattingPolicy.isSeparateGroups() ? 1 : 0));
+        out.put((byte) formattingPolicy.getPadLetter());
+        out.putInt(formattingPolicy.getGroupSize());
+        out.putLong(cipher.getLetters());
+        out.put(deck.toKey());
+        out.put(deck.saveState());
+        return out.array();
+    }
+
+    /**
+     * Throws if the session can not take any more of the message
+     * @throws IllegalStateException  if the session has been finished
+     */
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("Cipher session has been finished");
+        }
+    }
+}
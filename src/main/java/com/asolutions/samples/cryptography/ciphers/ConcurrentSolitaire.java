@@ -0,0 +1,116 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Thread safe solitaire cipher for a single key. Each thread encrypts and decrypts with
+ * its own Solitaire and deck created from the key, so calls never wait on each other.
+ * @author Brian Haggard
+ */
+public class ConcurrentSolitaire {
+
+    /**
+     * Key every thread's deck is created from
+     */
+    private final SolitaireKey key;
+
+    /**
+     * Decoder ring shared by every thread
+     */
+    private final Ring decoderRing;
+
+    /**
+     * Encoder ring shared by every thread
+     */
+    private final Ring encoderRing;
+
+    /**
+     * Keystream cache shared by every thread, or null for each thread to step its own deck
+     */
+    private final KeystreamCache keystreamCache;
+
+    /**
+     * Each thread's cipher
+     */
+    private final ThreadLocal<Solitaire> solitaires = new ThreadLocal<Solitaire>() {
+        @Override
+        protected Solitaire initialValue() {
+            return new Solitaire(key.newDeck(), decoderRing, encoderRing, keystreamCache);
+        }
+    };
+
+    /**
+     * Creates a thread safe cipher where each thread steps its own deck
+     * @param key    Key to encrypt and decrypt with
+     */
+    public ConcurrentSolitaire(SolitaireKey key) {
+        this(key, new DecoderRing(), new EncoderRing(), null);
+    }
+
+    /**
+     * Creates a thread safe cipher
+     * @param key               Key to encrypt and decrypt with
+     * @param decoderRing       Decoder ring shared by every thread, must be thread safe
+     * @param encoderRing       Encoder ring shared by every thread, must be thread safe
+     * @param keystreamCache    Keystream cache shared by every thread, or null for each thread to step its own deck
+     */
+    public ConcurrentSolitaire(SolitaireKey key, Ring decoderRing, Ring encoderRing, KeystreamCache keystreamCache) {
+        this.key = key;
+        this.decoderRing = decoderRing;
+        this.encoderRing = encoderRing;
+        this.keystreamCache = keystreamCache;
+    }
+
+    /**
+     * Key messages are encrypted and decrypted with
+     * @return    the key
+     */
+    public SolitaireKey getKey() {
+        return key;
+    }
+
+    /**
+     * Encrypts a plain text message using a solitaire cipher
+     * @param plainTextMessage   Message to be encrypted
+     * @return                   Encrypted message
+     */
+    public String encrypt(String plainTextMessage) {
+        return solitaires.get().encrypt(plainTextMessage);
+    }
+
+    /**
+     * Decrypts an encrypted message using a solitaire cipher
+     * @param encryptedMessage   Message to be decrypted
+     * @return                   Decrypted message
+     */
+    public String decrypt(String encryptedMessage) {
+        return solitaires.get().decrypt(encryptedMessage);
+    }
+
+    /**
+     * Encrypts a plain text message read from a stream using a solitaire cipher
+     * @param plainTextMessage   Message to be encrypted
+     * @param encryptedMessage   Writer the encrypted message is written to
+     * @throws IOException       If the message cannot be read or written
+     */
+    public void encrypt(Reader plainTextMessage, Writer encryptedMessage) throws IOException {
+        solitaires.get().encrypt(plainTextMessage, encryptedMessage);
+    }
+
+    /**
+     * Decrypts an encrypted message read from a stream using a solitaire cipher
+     * @param encryptedMessage   Message to be decrypted
+     * @param plainTextMessage   Writer the decrypted message is written to
+     * @throws IOException       If the message cannot be read or written
+     */
+    public void decrypt(Reader encryptedMessage, Writer plainTextMessage) throws IOException {
+        solitaires.get().decrypt(encryptedMessage, plainTextMessage);
+    }
+}
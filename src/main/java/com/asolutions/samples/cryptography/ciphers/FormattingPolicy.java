@@ -0,0 +1,203 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+/**
+ * How messages are scrubbed and laid out before they are ciphered: letters are kept and
+ * upper cased, everything else is dropped, the letters are padded to a whole number of
+ * groups and the groups are optionally separated by spaces. Formatting is a single pass
+ * over the message that writes straight into the caller's buffer.
+ * @author Brian Haggard
+ */
+public class FormattingPolicy {
+    /**
+     * The classic solitaire layout: groups of 5 letters separated by spaces, padded with X
+     */
+    public static final FormattingPolicy DEFAULT = new FormattingPolicy(5, 'X', true);
+
+    /**
+     * Number of letters in each group
+     */
+    private final int groupSize;
+
+    /**
+     * Letter the last group is padded with
+     */
+    private final char padLetter;
+
+    /**
+     * True to write a space between groups
+     */
+    private final boolean separateGroups;
+
+    /**
+     * Creates a policy
+     * @param groupSize         number of letters in each group, 1 for no padding
+     * @param padLetter         upper case letter the last group is padded with
+     * @param separateGroups    true to write a space between groups
+     */
+    public FormattingPolicy(int groupSize, char padLetter, boolean separateGroups) {
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("Group size must be positive");
+        }
+        if (padLetter < 'A' || padLetter > 'Z') {
+            throw new IllegalArgumentException("Pad letter must be an upper case letter");
+        }
+        this.groupSize = groupSize;
+        this.padLetter = padLetter;
+        this.separateGroups = separateGroups;
+    }
+
+    /**
+     * Number of letters in each group
+     * @return    the group size
+     */
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    /**
+     * Letter the last group is padded with
+     * @return    the pad letter
+     */
+    public char getPadLetter() {
+        return padLetter;
+    }
+
+    /**
+     * Whether a space is written between groups
+     * @return    true if groups are separated
+     */
+    public boolean isSeparateGroups() {
+        return separateGroups;
+    }
+
+    /**
+     * Largest number of characters formatting a message of the given length can write
+     * @param length    number of characters in the message
+     * @return          size the output buffer needs
+     */
+    public int maximumLength(int length) {
+        long padded = ((long) length + groupSize - 1) / groupSize * groupSize;
+        long maximum = separateGroups ? padded + padded / groupSize : padded;
+        if (maximum > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Message of " + length + " characters is too long to format");
+        }
+        return (int) maximum;
+    }
+
+    /**
+     * Formats a message into a new string
+     * @param message    message to format
+     * @return           the formatted message, empty if the message has no letters
+     */
+    public String format(CharSequence message) {
+        char[] out = new char[maximumLength(message.length())];
+        return new String(out, 0, format(message, out, 0));
+    }
+
+    /**
+     * Formats a string into an array
+     * @param message    message to format
+     * @param out        array the formatted message is written to, with room for
+     *                   {@link #maximumLength(int)} characters from the offset
+     * @param offset     position of the first character to write
+     * @return           number of characters written
+     */
+    int format(String message, char[] out, int offset) {
+        return format(message, out, null, offset) - offset;
+    }
+
+    /**
+     * Formats a message into an array
+     * @param message    message to format
+     * @param out        array the formatted message is written to, with room for
+     *                   {@link #maximumLength(int)} characters from the offset
+     * @param offset     position of the first character to write
+     * @return           number of characters written
+     */
+    public int format(CharSequence message, char[] out, int offset) {
+        return format(message, out, null, offset) - offset;
+    }
+
+    /**
+     * Formats a message into a buffer, advancing its position past the characters written
+     * @param message    message to format
+     * @param out        buffer the formatted message is written to
+     * @return           number of characters written
+     * @throws BufferOverflowException  if the buffer has fewer than {@link #maximumLength(int)} characters remaining
+     */
+    public int format(CharSequence message, CharBuffer out) {
+        if (out.remaining() < maximumLength(message.length())) {
+            throw new BufferOverflowException();
+        }
+        if (out.hasArray()) {
+            int offset = out.arrayOffset() + out.position();
+            int length = format(message, out.array(), null, offset) - offset;
+            out.position(out.position() + length);
+            return length;
+        }
+        int position = out.position();
+        format(message, null, out, 0);
+        return out.position() - position;
+    }
+
+    /**
+     * Formats a message into either an array or a buffer
+     * @param message    message to format
+     * @param array      array to write to, or null to write to the buffer
+     * @param buffer     buffer to write to when there is no array
+     * @param position   position in the array of the first character to write
+     * @return           position in the array after the last character written
+     */
+    private int format(CharSequence message, char[] array, CharBuffer buffer, int position) {
+        int letters = 0;
+        for (int i = 0; i < message.length(); i++) {
+            char character = message.charAt(i);
+            if (character >= 'a' && character <= 'z') {
+                character -= 'a' - 'A';
+            } else if (character < 'A' || character > 'Z') {
+                continue;
+            }
+            position = append(character, letters++, array, buffer, position);
+        }
+        while (letters % groupSize != 0) {
+            position = append(padLetter, letters++, array, buffer, position);
+        }
+        return position;
+    }
+
+    /**
+     * Writes a letter, preceded by a space if it starts a new group
+     * @param letter      letter to write
+     * @param index       number of letters written before this one
+     * @param array       array to write to, or null to write to the buffer
+     * @param buffer      buffer to write to when there is no array
+     * @param position    position in the array to write at
+     * @return            position in the array after the written characters
+     */
+    private int append(char letter, int index, char[] array, CharBuffer buffer, int position) {
+        if (separateGroups && index > 0 && index % groupSize == 0) {
+            position = put(' ', array, buffer, position);
+        }
+        return put(letter, array, buffer, position);
+    }
+
+    /**
+     * Writes a character to either an array or a buffer
+     * @param character    character to write
+     * @param array        array to write to, or null to write to the buffer
+     * @param buffer       buffer to write to when there is no array
+     * @param position     position in the array to write at
+     * @return             position in the array after the character
+     */
+    private static int put(char character, char[] array, CharBuffer buffer, int position) {
+        if (array != null) {
+            array[position] = character;
+        } else {
+            buffer.put(character);
+        }
+        return position + 1;
+    }
+}
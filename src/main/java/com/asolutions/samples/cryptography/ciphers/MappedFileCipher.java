@@ -0,0 +1,344 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.VectorRings;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamPipeline;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.SecureRandom;
+
+/**
+ * Encrypts and decrypts files of any size with a solitaire cipher by memory mapping them.
+ * The input is read once, from mapped windows, and the formatted output is collected in a
+ * direct buffer and written to the output file's channel each time the buffer fills, so memory
+ * use does not depend on the file size. The output file is never mapped, so it can be cut to
+ * the length written on any platform, including those that refuse to truncate a file with a
+ * live mapping. Output is the
+ * same as encrypting or decrypting the file's contents as one string with the same
+ * {@link FormattingPolicy}, except that a file with no letters produces an empty file.
+ *
+ * In pipelined mode the keystream is generated by a {@link KeystreamPipeline} on a thread of
+ * its own while the calling thread reads, ciphers and writes letters.
+ *
+ * Not thread safe: the deck is stepped while a file is ciphered.
+ * @author Brian Haggard
+ */
+public class MappedFileCipher {
+
+    /**
+     * Largest part of a file mapped at once
+     */
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Number of letters ciphered at a time
+     */
+    private static final int BLOCK_SIZE = 8192;
+
+    /**
+     * Number of output bytes collected before they are written to the output file
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * A deck of cards used for encryption
+     */
+    private final Deck deck;
+
+    /**
+     * A ring used to decode characters based on a card
+     */
+    private final Ring decoderRing;
+
+    /**
+     * A ring used to encode characters based on a card
+     */
+    private final Ring encoderRing;
+
+    /**
+     * Letters waiting to be ciphered
+     */
+    private final char[] letters = new char[BLOCK_SIZE];
+
+    /**
+     * Keystream values for the waiting letters
+     */
+    private final byte[] keystream = new byte[BLOCK_SIZE];
+
+    /**
+     * How the output is grouped and padded
+     */
+    private FormattingPolicy formattingPolicy = FormattingPolicy.DEFAULT;
+
+    /**
+     * True to generate the keystream on a producer thread
+     */
+    private boolean pipelined;
+
+    /**
+     * Pipeline the keystream is read from while a file is ciphered in pipelined mode
+     */
+    private KeystreamPipeline pipeline;
+
+    /**
+     * Number of letters waiting to be ciphered
+     */
+    private int pendingLetters;
+
+    /**
+     * Number of letters written to the output file so far
+     */
+    private long lettersWritten;
+
+    /**
+     * Number of bytes written to the output file so far
+     */
+    private long bytesWritten;
+
+    /**
+     * Output file being written
+     */
+    private FileChannel output;
+
+    /**
+     * Output bytes waiting to be written to the output file
+     */
+    private final ByteBuffer outputBuffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+
+    /**
+     * Creates a file cipher that uses the vector rings when they are available
+     * @param deck    Deck of cards to use in cryptography functions
+     */
+    public MappedFileCipher(Deck deck) {
+        this(deck, VectorRings.decoder(), VectorRings.encoder());
+    }
+
+    /**
+     * Creates a file cipher with the given deck and rings
+     * @param deck           Deck of cards to use in cryptography functions
+     * @param decoderRing    Decoder ring used to decode characters using a card from the deck
+     * @param encoderRing    Encoder ring used to encode characters using a card from the deck
+     */
+    public MappedFileCipher(Deck deck, Ring decoderRing, Ring encoderRing) {
+        this.deck = deck;
+        this.decoderRing = decoderRing;
+        this.encoderRing = encoderRing;
+    }
+
+    /**
+     * Sets how the output is grouped and padded
+     * @param formattingPolicy    How the output is grouped and padded
+     */
+    public void setFormattingPolicy(FormattingPolicy formattingPolicy) {
+        this.formattingPolicy = formattingPolicy;
+    }
+
+    /**
+     * Sets whether the keystream is generated on a producer thread while the calling thread
+     * ciphers. This helps large files on machines with a core to spare.
+     * @param pipelined    true to generate the keystream on a producer thread
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Encrypts a plain text file
+     * @param plainTextFile    File to be encrypted
+     * @param encryptedFile    File the encrypted message is written to
+     * @return                 Number of bytes written
+     * @throws IOException     If a file cannot be read or written
+     */
+    public long encrypt(File plainTextFile, File encryptedFile) throws IOException {
+        return cipher(plainTextFile, encryptedFile, encoderRing);
+    }
+
+    /**
+     * Decrypts an encrypted file
+     * @param encryptedFile    File to be decrypted
+     * @param plainTextFile    File the decrypted message is written to
+     * @return                 Number of bytes written
+     * @throws IOException     If a file cannot be read or written
+     */
+    public long decrypt(File encryptedFile, File plainTextFile) throws IOException {
+        return cipher(encryptedFile, plainTextFile, decoderRing);
+    }
+
+    /**
+     * Command line entry point.
+     * Usage: MappedFileCipher keygen &lt;key file&gt;
+     *    or: MappedFileCipher encrypt|decrypt &lt;key file&gt; &lt;input file&gt; &lt;output file&gt;
+     * @param args    command line arguments
+     * @throws IOException    If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && "keygen".equals(args[0])) {
+            Deck deck = new Deck();
+            deck.shuffle(new SecureRandom());
+            writeKey(deck, new File(args[1]));
+        } else if (args.length == 4 && ("encrypt".equals(args[0]) || "decrypt".equals(args[0]))) {
+            MappedFileCipher fileCipher = new MappedFileCipher(Deck.readKey(new File(args[1])));
+            File in = new File(args[2]);
+            File out = new File(args[3]);
+            long bytes = "encrypt".equals(args[0]) ? fileCipher.encrypt(in, out) : fileCipher.decrypt(in, out);
+            System.out.println("Wrote " + bytes + " bytes to " + out);
+        } else {
+            System.err.println("Usage: MappedFileCipher keygen <key file>");
+            System.err.println("   or: MappedFileCipher encrypt|decrypt <key file> <input file> <output file>");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Uses the passed in ring to perform cryptography on a file
+     * @param inFile     File to be encrypted or decrypted
+     * @param outFile    File the resulting message is written to
+     * @param ring       Ring to be used
+     * @return           Number of bytes written
+     * @throws IOException  If a file cannot be read or written
+     */
+    private long cipher(File inFile, File outFile, Ring ring) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(inFile, "r");
+        try {
+            FileChannel input = in.getChannel();
+            int groupSize = formattingPolicy.getGroupSize();
+            RandomAccessFile out = new RandomAccessFile(outFile, "rw");
+            try {
+                output = out.getChannel();
+                outputBuffer.clear();
+                lettersWritten = 0;
+                bytesWritten = 0;
+                pendingLetters = 0;
+                deck.restore();
+                cipherLetters(input, ring);
+                while ((lettersWritten + pendingLetters) % groupSize != 0) {
+                    addLetter(formattingPolicy.getPadLetter(), ring);
+                }
+                flushLetters(ring);
+                flushOutput();
+                out.setLength(bytesWritten);
+            } finally {
+                if (pipeline != null) {
+                    pipeline.close();
+                    pipeline = null;
+                }
+                output = null;
+                out.close();
+            }
+            return bytesWritten;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads every letter of a file, upper cases it and ciphers it
+     * @param input    file to read
+     * @param ring     Ring to be used
+     * @throws IOException  If a file cannot be read or written
+     */
+    private void cipherLetters(FileChannel input, Ring ring) throws IOException {
+        long size = input.size();
+        for (long position = 0; position < size; position += WINDOW_SIZE) {
+            MappedByteBuffer window = input.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+            while (window.hasRemaining()) {
+                byte character = window.get();
+                if (character >= 'a' && character <= 'z') {
+                    addLetter((char) (character - ('a' - 'A')), ring);
+                } else if (character >= 'A' && character <= 'Z') {
+                    addLetter((char) character, ring);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an upper case letter to the block waiting to be ciphered, ciphering the block when it is full
+     * @param letter    letter to add
+     * @param ring      Ring to be used
+     * @throws IOException  If the output file cannot be written
+     */
+    private void addLetter(char letter, Ring ring) throws IOException {
+        letters[pendingLetters] = letter;
+        if (++pendingLetters == BLOCK_SIZE) {
+            flushLetters(ring);
+        }
+    }
+
+    /**
+     * Ciphers the waiting letters and writes them to the output file, grouped by the formatting policy
+     * @param ring    Ring to be used
+     * @throws IOException  If the output file cannot be written
+     */
+    private void flushLetters(Ring ring) throws IOException {
+        if (pendingLetters == 0) {
+            return;
+        }
+        if (pipelined && pipeline == null) {
+            pipeline = new KeystreamPipeline(deck);
+        }
+        if (pipeline != null) {
+            pipeline.read(keystream, 0, pendingLetters);
+        } else {
+            deck.generateKeystream(keystream, 0, pendingLetters);
+        }
+        ring.cipher(letters, 0, keystream, 0, letters, 0, pendingLetters);
+        int groupSize = formattingPolicy.getGroupSize();
+        boolean separateGroups = formattingPolicy.isSeparateGroups();
+        for (int i = 0; i < pendingLetters; i++) {
+            if (separateGroups && lettersWritten > 0 && lettersWritten % groupSize == 0) {
+                put((byte) ' ');
+            }
+            put((byte) letters[i]);
+            lettersWritten++;
+        }
+        pendingLetters = 0;
+    }
+
+    /**
+     * Adds a byte to the output buffer, writing the buffer to the output file when it is full
+     * @param character    byte to write
+     * @throws IOException  If the output file cannot be written
+     */
+    private void put(byte character) throws IOException {
+        if (!outputBuffer.hasRemaining()) {
+            flushOutput();
+        }
+        outputBuffer.put(character);
+        bytesWritten++;
+    }
+
+    /**
+     * Writes the output buffer to the output file and empties it
+     * @throws IOException  If the output file cannot be written
+     */
+    private void flushOutput() throws IOException {
+        outputBuffer.flip();
+        while (outputBuffer.hasRemaining()) {
+            output.write(outputBuffer);
+        }
+        outputBuffer.clear();
+    }
+
+    /**
+     * Writes the original order of a deck to a key file
+     * @param deck       deck whose original order is the key
+     * @param keyFile    file to write
+     * @throws IOException  If the key file cannot be written
+     */
+    private static void writeKey(Deck deck, File keyFile) throws IOException {
+        FileOutputStream out = new FileOutputStream(keyFile);
+        try {
+            out.write(deck.toKey());
+        } finally {
+            out.close();
+        }
+    }
+}
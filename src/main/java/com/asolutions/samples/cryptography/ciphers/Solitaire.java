@@ -4,6 +4,24 @@ import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing
 import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
 import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
 import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamPad;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Class that handles encryption and decryption using
@@ -12,6 +30,22 @@ import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
  */
 public class Solitaire {
 
+    /**
+     * Number of characters read at a time when ciphering a stream
+     */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    /**
+     * Character set of byte streams. Only ASCII letters are ciphered, so this also reads
+     * the letters of any ASCII compatible encoding.
+     */
+    private static final Charset STREAM_CHARSET = Charset.forName("US-ASCII");
+
+    /**
+     * Number of batches per processor that encryptAll and decryptAll split messages into
+     */
+    private static final int BATCHES_PER_PROCESSOR = 4;
+
     /**
      * A deck of cards used for encryption
      */
@@ -24,16 +58,32 @@ public class Solitaire {
      * A ring used to decode characters based on a card
      */
     private Ring encoderRing;
+    /**
+     * Cache of keystreams generated from the deck's original order, or null to step the deck
+     * for every message
+     */
+    private KeystreamCache keystreamCache;
+
+    /**
+     * Precomputed keystream for the deck's original order, or null to generate it
+     */
+    private KeystreamPad keystreamPad;
+
+    /**
+     * How messages are grouped and padded
+     */
+    private FormattingPolicy formattingPolicy = FormattingPolicy.DEFAULT;
 
     /**
      * Default constructor creates a Solitaire class with a shuffled deck of cards
-     * for cryptography.
+     * for cryptography. Keystreams are kept in the default keystream cache.
      */
     public Solitaire() {
         this.deck = new Deck();
         this.deck.shuffle();
         this.decoderRing = new DecoderRing();
         this.encoderRing = new EncoderRing();
+        this.keystreamCache = KeystreamCache.getDefault();
     }
 
     /**
@@ -48,27 +98,55 @@ public class Solitaire {
         this.encoderRing = encoderRing;
     }
 
+    /**
+     * Constructor that accepts the deck and rings used for cryptography and a cache for
+     * the keystreams generated from the deck's original order
+     * @param deck              Deck of cards to use in cryptography functions
+     * @param decoderRing       Decoder ring used to decode characters using a card from the deck
+     * @param encoderRing       Encoder ring used to encode characters using a card from the deck
+     * @param keystreamCache    Cache of keystreams shared by ciphers with the same deck order
+     */
+    public Solitaire(Deck deck, Ring decoderRing, Ring encoderRing, KeystreamCache keystreamCache) {
+        this.deck = deck;
+        this.decoderRing = decoderRing;
+        this.encoderRing = encoderRing;
+        this.keystreamCache = keystreamCache;
+    }
+
+    /**
+     * Sets how messages are grouped and padded. The default is groups of 5 letters separated
+     * by spaces and padded with X's.
+     * @param formattingPolicy    How messages are grouped and padded
+     */
+    public void setFormattingPolicy(FormattingPolicy formattingPolicy) {
+        this.formattingPolicy = formattingPolicy;
+    }
+
+    /**
+     * Sets a precomputed keystream to read instead of stepping the deck or using the keystream
+     * cache. Messages longer than the pad use keystream generated live past its end.
+     * @param keystreamPad    Pad made from the deck's original order, or null to generate the keystream
+     * @throws IllegalArgumentException  if the pad was made from a different deck
+     */
+    public void setKeystreamPad(KeystreamPad keystreamPad) {
+        if (keystreamPad != null && !keystreamPad.isFor(deck)) {
+            throw new IllegalArgumentException("Keystream pad was made from a different deck");
+        }
+        this.keystreamPad = keystreamPad;
+    }
+
     /**
      * Formats a message for encryption. It removes all non-word characters, breaks the message
-     * into 5 character chunks, and pads the last chunk with X's if needed.
+     * into chunks, and pads the last chunk as the formatting policy says, by default 5 character
+     * chunks padded with X's.
      * @param unformattedMessage  Message to be formatted
-     * @return                    Formatted message
+     * @return                    Formatted message, empty if the message has no letters
      */
     protected String formatMessage(String unformattedMessage) {
-        String scrubbedMessage = unformattedMessage.replaceAll("[^a-zA-Z]", "").toUpperCase();
-        char[] chars = scrubbedMessage.toCharArray();
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < chars.length + 4; i++) {
-            if (i % 5 == 0) {
-                sb.append(" ");
-            }
-            if (i >= chars.length) {
-                sb.append("X");
-            } else {
-                sb.append(chars[i]);
-            }
-        }
-        return sb.substring(1, sb.length() - (sb.length() % 6));
+        char[] chars = new char[formattingPolicy.maximumLength(unformattedMessage.length())];
+        // The String overload, not the CharSequence one: PowerMock's javassist in the legacy
+        // tests cannot load classes that call methods taking CharSequence.
+        return new String(chars, 0, formattingPolicy.format(unformattedMessage, chars, 0));
     }
 
     /**
@@ -89,6 +167,137 @@ public class Solitaire {
         return cipher(encryptedMessage, decoderRing);
     }
 
+    /**
+     * Creates a reusable context that encrypts messages into caller supplied buffers without
+     * allocating. It has its own copy of the deck, the current formatting policy and any keystream pad.
+     * @return   A new encryption context
+     */
+    public CipherContext newEncryptionContext() {
+        return new CipherContext(deck, encoderRing, keystreamCache, keystreamPad, formattingPolicy);
+    }
+
+    /**
+     * Creates a reusable context that decrypts messages into caller supplied buffers without
+     * allocating. It has its own copy of the deck, the current formatting policy and any keystream pad.
+     * @return   A new decryption context
+     */
+    public CipherContext newDecryptionContext() {
+        return new CipherContext(deck, decoderRing, keystreamCache, keystreamPad, formattingPolicy);
+    }
+
+    /**
+     * Starts a session that encrypts one message arriving in chunks. Unlike encrypt(String),
+     * the session keeps its place in the keystream from one chunk to the next.
+     * @return   A new encryption session with its own copy of the deck
+     */
+    public CipherSession newEncryptionSession() {
+        return new CipherSession(deck, encoderRing, true, formattingPolicy);
+    }
+
+    /**
+     * Starts a session that decrypts one message arriving in chunks. Unlike decrypt(String),
+     * the session keeps its place in the keystream from one chunk to the next.
+     * @return   A new decryption session with its own copy of the deck
+     */
+    public CipherSession newDecryptionSession() {
+        return new CipherSession(deck, decoderRing, false, formattingPolicy);
+    }
+
+    /**
+     * Resumes a session from a snapshot taken by CipherSession.snapshot, carrying on from the
+     * keystream position it was taken at without stepping the deck from the start
+     * @param snapshot   Snapshot of a session started by this cipher or one with the same key
+     * @return           The resumed session
+     * @throws IllegalArgumentException  if the bytes are not a snapshot or the session used a different key
+     */
+    public CipherSession resumeSession(byte[] snapshot) {
+        return CipherSession.restore(snapshot, deck, decoderRing, encoderRing);
+    }
+
+    /**
+     * Encrypts a plain text message read from a stream using a solitaire cipher. The output is
+     * the same as encrypt(String) on the whole message, but only a small buffer is held in memory.
+     * @param plainTextMessage   Message to be encrypted
+     * @param encryptedMessage   Writer the encrypted message is written to
+     * @throws IOException       If the message cannot be read or written
+     */
+    public void encrypt(Reader plainTextMessage, Writer encryptedMessage) throws IOException {
+        cipher(plainTextMessage, encryptedMessage, encoderRing);
+    }
+
+    /**
+     * Decrypts an encrypted message read from a stream using a solitaire cipher. The output is
+     * the same as decrypt(String) on the whole message, but only a small buffer is held in memory.
+     * @param encryptedMessage   Message to be decrypted
+     * @param plainTextMessage   Writer the decrypted message is written to
+     * @throws IOException       If the message cannot be read or written
+     */
+    public void decrypt(Reader encryptedMessage, Writer plainTextMessage) throws IOException {
+        cipher(encryptedMessage, plainTextMessage, decoderRing);
+    }
+
+    /**
+     * Encrypts a plain text message read from a byte stream using a solitaire cipher
+     * @param plainTextMessage   Message to be encrypted, in an ASCII compatible encoding
+     * @param encryptedMessage   Stream the encrypted message is written to as ASCII
+     * @throws IOException       If the message cannot be read or written
+     */
+    public void encrypt(InputStream plainTextMessage, OutputStream encryptedMessage) throws IOException {
+        cipher(plainTextMessage, encryptedMessage, encoderRing);
+    }
+
+    /**
+     * Decrypts an encrypted message read from a byte stream using a solitaire cipher
+     * @param encryptedMessage   Message to be decrypted, in an ASCII compatible encoding
+     * @param plainTextMessage   Stream the decrypted message is written to as ASCII
+     * @throws IOException       If the message cannot be read or written
+     */
+    public void decrypt(InputStream encryptedMessage, OutputStream plainTextMessage) throws IOException {
+        cipher(encryptedMessage, plainTextMessage, decoderRing);
+    }
+
+    /**
+     * Encrypts many plain text messages in parallel on the common fork/join pool. Each
+     * message is encrypted as if by encrypt(String).
+     * @param plainTextMessages   Messages to be encrypted
+     * @return                    Encrypted messages in the same order
+     */
+    public List<String> encryptAll(List<String> plainTextMessages) {
+        return encryptAll(plainTextMessages, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encrypts many plain text messages in parallel on the given executor. Each batch of
+     * messages is encrypted with its own copy of the deck; the rings are shared.
+     * @param plainTextMessages   Messages to be encrypted
+     * @param executor            Executor the batches run on
+     * @return                    Encrypted messages in the same order
+     */
+    public List<String> encryptAll(List<String> plainTextMessages, ExecutorService executor) {
+        return cipherAll(plainTextMessages, executor, true);
+    }
+
+    /**
+     * Decrypts many encrypted messages in parallel on the common fork/join pool. Each
+     * message is decrypted as if by decrypt(String).
+     * @param encryptedMessages   Messages to be decrypted
+     * @return                    Decrypted messages in the same order
+     */
+    public List<String> decryptAll(List<String> encryptedMessages) {
+        return decryptAll(encryptedMessages, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypts many encrypted messages in parallel on the given executor. Each batch of
+     * messages is decrypted with its own copy of the deck; the rings are shared.
+     * @param encryptedMessages   Messages to be decrypted
+     * @param executor            Executor the batches run on
+     * @return                    Decrypted messages in the same order
+     */
+    public List<String> decryptAll(List<String> encryptedMessages, ExecutorService executor) {
+        return cipherAll(encryptedMessages, executor, false);
+    }
+
     /**
      * Uses the passed in ring to perform cryptography
      * @param message   Message to be encrypted or decrypted
@@ -96,6 +305,12 @@ public class Solitaire {
      * @return          Resulting message
      */
     private String cipher(String message, Ring ring) {
+        if (keystreamPad != null || keystreamCache != null) {
+            char[] chars = new char[formattingPolicy.maximumLength(message.length())];
+            // String overload for PowerMock, as in formatMessage
+            int length = formattingPolicy.format(message, chars, 0);
+            return cipher(chars, length, ring, keystreamPad, keystreamCache);
+        }
         String scrubbedMessage = formatMessage(message);
         deck.restore();
         StringBuilder sb = new StringBuilder();
@@ -104,4 +319,111 @@ public class Solitaire {
         }
         return sb.toString();
     }
+
+    /**
+     * Uses the passed in ring and a precomputed or cached keystream to perform cryptography
+     * @param chars             Formatted message to be encrypted or decrypted
+     * @param length            Number of characters in the formatted message
+     * @param ring              Ring to be used
+     * @param keystreamPad      Precomputed keystream for the deck's original order, or null to use the cache
+     * @param keystreamCache    Cache holding the keystream for the deck's original order
+     * @return                  Resulting message
+     */
+    private String cipher(char[] chars, int length, Ring ring, KeystreamPad keystreamPad, KeystreamCache keystreamCache) {
+        int letterCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != ' ') {
+                chars[letterCount++] = chars[i];
+            }
+        }
+        byte[] keystream = new byte[letterCount];
+        if (keystreamPad != null) {
+            keystreamPad.getValues(0, keystream, 0, letterCount);
+        } else {
+            keystreamCache.getKeystream(deck, letterCount).getValues(0, keystream, 0, letterCount);
+        }
+        ring.cipher(chars, 0, keystream, 0, chars, 0, letterCount);
+        for (int i = length - 1, letter = letterCount - 1; i >= 0; i--) {
+            if (formattingPolicy.isSeparateGroups() && i % (formattingPolicy.getGroupSize() + 1) == formattingPolicy.getGroupSize()) {
+                chars[i] = ' ';
+            } else {
+                chars[i] = chars[letter--];
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Uses the passed in ring to perform cryptography on a byte stream
+     * @param in        Message to be encrypted or decrypted
+     * @param out       Stream the resulting message is written to
+     * @param ring      Ring to be used
+     * @throws IOException  If the message cannot be read or written
+     */
+    private void cipher(InputStream in, OutputStream out, Ring ring) throws IOException {
+        Writer writer = new OutputStreamWriter(out, STREAM_CHARSET);
+        cipher(new InputStreamReader(in, STREAM_CHARSET), writer, ring);
+        writer.flush();
+    }
+
+    /**
+     * Uses the passed in ring to perform cryptography on a character stream
+     * @param reader    Message to be encrypted or decrypted
+     * @param writer    Writer the resulting message is written to
+     * @param ring      Ring to be used
+     * @throws IOException  If the message cannot be read or written
+     */
+    private void cipher(Reader reader, Writer writer, Ring ring) throws IOException {
+        StreamingCipher streamingCipher = new StreamingCipher(deck, ring, formattingPolicy);
+        char[] in = new char[STREAM_BUFFER_SIZE];
+        char[] out = new char[streamingCipher.maximumOutputLength(STREAM_BUFFER_SIZE) + streamingCipher.maximumPaddingLength()];
+        int read;
+        while ((read = reader.read(in)) != -1) {
+            writer.write(out, 0, streamingCipher.update(in, 0, read, out, 0));
+        }
+        writer.write(out, 0, streamingCipher.finish(out, 0));
+    }
+
+    /**
+     * Splits messages into batches and encrypts or decrypts each batch on the executor
+     * with its own copy of this cipher
+     * @param messages   Messages to be encrypted or decrypted
+     * @param executor   Executor the batches run on
+     * @param encrypt    True to encrypt the messages, false to decrypt them
+     * @return           Resulting messages in the same order
+     */
+    private List<String> cipherAll(final List<String> messages, ExecutorService executor, final boolean encrypt) {
+        final List<String> results = new ArrayList<String>(messages);
+        int batchCount = Math.min(results.size(), Runtime.getRuntime().availableProcessors() * BATCHES_PER_PROCESSOR);
+        List<Callable<Void>> batches = new ArrayList<Callable<Void>>(batchCount);
+        for (int batch = 0; batch < batchCount; batch++) {
+            final int from = (int) ((long) results.size() * batch / batchCount);
+            final int to = (int) ((long) results.size() * (batch + 1) / batchCount);
+            final Solitaire solitaire = new Solitaire(deck.copy(), decoderRing, encoderRing, keystreamCache);
+            solitaire.setFormattingPolicy(formattingPolicy);
+            solitaire.keystreamPad = keystreamPad;
+            batches.add(new Callable<Void>() {
+                public Void call() {
+                    for (int i = from; i < to; i++) {
+                        results.set(i, encrypt ? solitaire.encrypt(messages.get(i)) : solitaire.decrypt(messages.get(i)));
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(batches)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ciphering messages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to cipher messages", e.getCause());
+        }
+        return results;
+    }
 }
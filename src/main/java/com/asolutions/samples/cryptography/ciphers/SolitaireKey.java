@@ -0,0 +1,49 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+
+/**
+ * An immutable solitaire cipher key: the original order of a deck of cards.
+ * Any number of threads can create decks from the same key.
+ * @author Brian Haggard
+ */
+public class SolitaireKey {
+
+    /**
+     * Private copy of the deck the key was taken from. It is never shuffled, sorted or
+     * stepped, so copying it from several threads at once is safe.
+     */
+    private final Deck deck;
+
+    /**
+     * Takes a key from the original order of a deck. Later changes to the deck do not
+     * change the key.
+     * @param deck    Deck whose original order is the key
+     */
+    public SolitaireKey(Deck deck) {
+        this.deck = deck.copy();
+    }
+
+    /**
+     * Creates a new deck in the key's order
+     * @return    a deck that can encrypt and decrypt messages with this key
+     */
+    public Deck newDeck() {
+        return deck.copy();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SolitaireKey solitaireKey = (SolitaireKey) o;
+
+        return deck.equals(solitaireKey.deck);
+    }
+
+    @Override
+    public int hashCode() {
+        return deck.hashCode();
+    }
+}
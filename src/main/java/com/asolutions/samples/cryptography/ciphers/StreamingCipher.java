@@ -0,0 +1,208 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+
+/**
+ * Formats and ciphers a message one block of characters at a time. Produces the same
+ * output as formatting the whole message with a {@link FormattingPolicy} and ciphering it,
+ * without holding the message in memory.
+ * @author Brian Haggard
+ */
+class StreamingCipher {
+    /**
+     * Deck of cards positioned at the next keystream value
+     */
+    private final Deck deck;
+
+    /**
+     * Ring used to encrypt or decrypt each letter
+     */
+    private final Ring ring;
+
+    /**
+     * Number of letters in each group of the output
+     */
+    private final int groupSize;
+
+    /**
+     * Letter the last group is padded with
+     */
+    private final char padLetter;
+
+    /**
+     * True to write a space between groups
+     */
+    private final boolean separateGroups;
+
+    /**
+     * Number of letters ciphered so far
+     */
+    private long letters;
+
+    /**
+     * Keystream values generated ahead of the letters that use them, as a circular buffer
+     */
+    private byte[] lookahead = new byte[0];
+
+    /**
+     * Position in the lookahead buffer of the next keystream value
+     */
+    private int lookaheadStart;
+
+    /**
+     * Number of keystream values in the lookahead buffer
+     */
+    private int lookaheadLength;
+
+    /**
+     * Creates a cipher for a new message in the default format, restoring the deck to its original order
+     * @param deck    Deck of cards to use in cryptography functions
+     * @param ring    Ring used to encrypt or decrypt each letter
+     */
+    StreamingCipher(Deck deck, Ring ring) {
+        this(deck, ring, FormattingPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates a cipher for a new message, restoring the deck to its original order
+     * @param deck                Deck of cards to use in cryptography functions
+     * @param ring                Ring used to encrypt or decrypt each letter
+     * @param formattingPolicy    How the output is grouped and padded
+     */
+    StreamingCipher(Deck deck, Ring ring, FormattingPolicy formattingPolicy) {
+        this(deck, ring, formattingPolicy, 0);
+        deck.restore();
+    }
+
+    /**
+     * Creates a cipher that carries on a message part way through. The deck is used as it is,
+     * so it must already be positioned at the keystream value for the next letter.
+     * @param deck                Deck of cards positioned at the next keystream value
+     * @param ring                Ring used to encrypt or decrypt each letter
+     * @param formattingPolicy    How the output is grouped and padded
+     * @param letters             Number of letters of the message already ciphered
+     */
+    StreamingCipher(Deck deck, Ring ring, FormattingPolicy formattingPolicy, long letters) {
+        this.deck = deck;
+        this.ring = ring;
+        this.groupSize = formattingPolicy.getGroupSize();
+        this.padLetter = formattingPolicy.getPadLetter();
+        this.separateGroups = formattingPolicy.isSeparateGroups();
+        this.letters = letters;
+    }
+
+    /**
+     * Largest number of characters update can write for the given number of input characters
+     * @param length    number of input characters
+     * @return          size the output buffer needs
+     */
+    int maximumOutputLength(int length) {
+        return separateGroups ? length + length / groupSize + 1 : length;
+    }
+
+    /**
+     * Largest number of characters finish can write
+     * @return    size the output buffer needs for the padding
+     */
+    int maximumPaddingLength() {
+        return groupSize - 1;
+    }
+
+    /**
+     * Scrubs and ciphers a block of the message. Characters other than A-Z and a-z are dropped,
+     * letters are upper cased and ciphered, and a space is written between groups if the
+     * formatting policy separates them.
+     * @param in           message characters
+     * @param offset       position of the first character to read
+     * @param length       number of characters to read
+     * @param out          buffer the ciphered characters are written to
+     * @param outOffset    position of the first character to write
+     * @return             number of characters written
+     */
+    int update(char[] in, int offset, int length, char[] out, int outOffset) {
+        int position = outOffset;
+        for (int i = offset; i < offset + length; i++) {
+            char character = in[i];
+            if (character >= 'a' && character <= 'z') {
+                character -= 'a' - 'A';
+            } else if (character < 'A' || character > 'Z') {
+                continue;
+            }
+            position = append(character, out, position);
+        }
+        return position - outOffset;
+    }
+
+    /**
+     * Pads the last group of the message with the pad letter and ciphers the padding
+     * @param out          buffer the ciphered padding is written to, needs room for maximumPaddingLength characters
+     * @param outOffset    position of the first character to write
+     * @return             number of characters written
+     */
+    int finish(char[] out, int outOffset) {
+        int position = outOffset;
+        while (letters % groupSize != 0) {
+            position = append(padLetter, out, position);
+        }
+        return position - outOffset;
+    }
+
+    /**
+     * Number of letters ciphered so far, padding included
+     * @return    the number of letters
+     */
+    long getLetters() {
+        return letters;
+    }
+
+    /**
+     * Generates keystream values ahead of time, so that later letters do not have to wait
+     * for the deck to be stepped
+     * @param limit    number of keystream values to hold ready
+     */
+    void prefetch(int limit) {
+        if (limit > lookahead.length) {
+            byte[] grownLookahead = new byte[limit];
+            for (int i = 0; i < lookaheadLength; i++) {
+                grownLookahead[i] = lookahead[(lookaheadStart + i) % lookahead.length];
+            }
+            lookahead = grownLookahead;
+            lookaheadStart = 0;
+        }
+        while (lookaheadLength < limit) {
+            int end = (lookaheadStart + lookaheadLength) % lookahead.length;
+            lookaheadLength += deck.generateKeystream(lookahead, end, Math.min(limit - lookaheadLength, lookahead.length - end));
+        }
+    }
+
+    /**
+     * Takes the next keystream value from the lookahead buffer, or from the deck if the buffer is empty
+     * @return    the value of the next card, from 1 to 52
+     */
+    private int nextKeyValue() {
+        if (lookaheadLength == 0) {
+            return deck.getNextCard().value();
+        }
+        int value = lookahead[lookaheadStart];
+        lookaheadStart = (lookaheadStart + 1) % lookahead.length;
+        lookaheadLength--;
+        return value;
+    }
+
+    /**
+     * Ciphers a single upper case letter, starting a new group if needed
+     * @param character    letter to cipher
+     * @param out          buffer the ciphered letter is written to
+     * @param position     position to write at
+     * @return             position after the written characters
+     */
+    private int append(char character, char[] out, int position) {
+        if (separateGroups && letters > 0 && letters % groupSize == 0) {
+            out[position++] = ' ';
+        }
+        out[position++] = (char) ring.cipher(character, nextKeyValue());
+        letters++;
+        return position;
+    }
+}
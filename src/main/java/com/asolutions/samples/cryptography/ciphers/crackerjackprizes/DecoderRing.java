@@ -8,6 +8,11 @@ import com.asolutions.samples.cryptography.ciphers.playingcards.Card;
  */
 public class DecoderRing extends Ring {
 
+    /**
+     * Decoded letters indexed by letter and card value
+     */
+    private static final char[] table = createTable(-1);
+
     /**
      * Accepts an encoded character and a playing card which is used to decode the character
      * @param character  a character [A-Z] to be decoded
@@ -16,7 +21,17 @@ public class DecoderRing extends Ring {
      */
     @Override
     public Character cipher(Character character, Card card) {
-        int characterValue = alphabet.indexOf(character);
-        return alphabet.charAt((characterValue - card.getValue() + 78) % 26);
+        return table[(character - 'A') * CARD_VALUES + card.getValue() - 1];
+    }
+
+    /**
+     * Accepts an encoded letter and the value of a card which is used to decode the letter
+     * @param letter      a character [A-Z] to be decoded
+     * @param keyValue    the value [1-53] of the card from a solitaire cipher deck
+     * @return            the decoded character [A-Z]
+     */
+    @Override
+    public int cipher(int letter, int keyValue) {
+        return table[(letter - 'A') * CARD_VALUES + keyValue - 1];
     }
 }
@@ -8,6 +8,11 @@ import com.asolutions.samples.cryptography.ciphers.playingcards.Card;
  */
 public class EncoderRing extends Ring {
 
+    /**
+     * Encoded letters indexed by letter and card value
+     */
+    private static final char[] table = createTable(1);
+
     /**
      * Accepts an character and a playing card which is used to encode the character
      * @param character  a character [A-Z] to be encoded
@@ -16,7 +21,17 @@ public class EncoderRing extends Ring {
      */
     @Override
     public Character cipher(Character character, Card card) {
-        int characterValue = alphabet.indexOf(character);
-        return alphabet.charAt((characterValue + card.getValue()) % 26);
+        return table[(character - 'A') * CARD_VALUES + card.getValue() - 1];
+    }
+
+    /**
+     * Accepts a letter and the value of a card which is used to encode the letter
+     * @param letter      a character [A-Z] to be encoded
+     * @param keyValue    the value [1-53] of the card from a solitaire cipher deck
+     * @return            the encoded character [A-Z]
+     */
+    @Override
+    public int cipher(int letter, int keyValue) {
+        return table[(letter - 'A') * CARD_VALUES + keyValue - 1];
     }
 }
@@ -5,6 +5,9 @@ import com.asolutions.samples.cryptography.ciphers.playingcards.Card;
 
 /**
  * Base class for Encoder and Decoder rings
+ *
+ * Subclasses that only implement cipher(Character, Card) also work with the primitive
+ * and bulk forms, which adapt each letter and key value into a character and a card.
  * @author Brian Haggard
  */
 public abstract class Ring {
@@ -13,5 +16,63 @@ public abstract class Ring {
      */
     protected static final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
 
+    /**
+     * Number of card values a letter can be combined with, 1 through 53
+     */
+    protected static final int CARD_VALUES = 53;
+
     public abstract Character cipher(Character character, Card card);
+
+    /**
+     * Accepts a letter and the value of a card which is used to cipher the letter
+     * @param letter      a character [A-Z] to be ciphered
+     * @param keyValue    the value [1-53] of the card from a solitaire cipher deck
+     * @return            the ciphered character [A-Z]
+     */
+    public int cipher(int letter, int keyValue) {
+        return cipher(Character.valueOf((char) letter), Card.forOrdinal(keyValue - 1));
+    }
+
+    /**
+     * Ciphers a block of letters with a block of keystream values
+     * @param in           characters [A-Z] to be ciphered
+     * @param keystream    card values [1-53] to cipher each character with
+     * @param out          array the ciphered characters are written to, may be the same as in
+     */
+    public void cipher(char[] in, byte[] keystream, char[] out) {
+        cipher(in, 0, keystream, 0, out, 0, in.length);
+    }
+
+    /**
+     * Ciphers part of a block of letters with part of a block of keystream values
+     * @param in                 characters [A-Z] to be ciphered
+     * @param inOffset           position of the first character to cipher
+     * @param keystream          card values [1-53] to cipher each character with
+     * @param keystreamOffset    position of the first card value to use
+     * @param out                array the ciphered characters are written to, may be the same as in
+     * @param outOffset          position to write the first ciphered character to
+     * @param length             number of characters to cipher
+     */
+    public void cipher(char[] in, int inOffset, byte[] keystream, int keystreamOffset, char[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (char) cipher(in[inOffset + i], keystream[keystreamOffset + i]);
+        }
+    }
+
+    /**
+     * Builds a lookup table of ciphered letters indexed by letter and card value
+     * @param shift    amount added to each card value before it is added to the letter,
+     *                 1 to encode and -1 to decode
+     * @return         table of 26 rows of 53 ciphered characters
+     */
+    static char[] createTable(int shift) {
+        char[] table = new char[alphabet.length() * CARD_VALUES];
+        for (int letter = 0; letter < alphabet.length(); letter++) {
+            for (int keyValue = 1; keyValue <= CARD_VALUES; keyValue++) {
+                int index = (letter + shift * keyValue + 3 * alphabet.length()) % alphabet.length();
+                table[letter * CARD_VALUES + keyValue - 1] = alphabet.charAt(index);
+            }
+        }
+        return table;
+    }
 }
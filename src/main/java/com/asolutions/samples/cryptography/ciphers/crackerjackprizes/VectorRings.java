@@ -0,0 +1,93 @@
+package com.asolutions.samples.cryptography.ciphers.crackerjackprizes;
+
+/**
+ * Creates rings whose bulk cipher uses the JDK Vector API. The vector rings are built
+ * from the src/vector source set, which needs JDK 16 or later and the
+ * jdk.incubator.vector module (--add-modules jdk.incubator.vector). When either is
+ * missing the plain table-driven rings are returned instead, which produce the same output.
+ *
+ * Pass the rings to a Solitaire constructor to select them.
+ * @author Brian Haggard
+ */
+public class VectorRings {
+    /**
+     * Class name of the vector encoder ring
+     */
+    private static final String ENCODER_RING = "com.asolutions.samples.cryptography.ciphers.crackerjackprizes.VectorEncoderRing";
+
+    /**
+     * Class name of the vector decoder ring
+     */
+    private static final String DECODER_RING = "com.asolutions.samples.cryptography.ciphers.crackerjackprizes.VectorDecoderRing";
+
+    /**
+     * True if the vector rings can be used
+     */
+    private static final boolean available = checkAvailable();
+
+    private VectorRings() {
+    }
+
+    /**
+     * Checks whether the Vector API and the vector rings are present
+     * @return    true if the vector rings can be used
+     */
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Creates an encoder ring, using the Vector API when it is available
+     * @return    a vector encoder ring or an EncoderRing
+     */
+    public static Ring encoder() {
+        return available ? create(ENCODER_RING) : new EncoderRing();
+    }
+
+    /**
+     * Creates a decoder ring, using the Vector API when it is available
+     * @return    a vector decoder ring or a DecoderRing
+     */
+    public static Ring decoder() {
+        return available ? create(DECODER_RING) : new DecoderRing();
+    }
+
+    /**
+     * Creates a vector ring by class name
+     * @param className    name of the ring class
+     * @return             the ring
+     */
+    private static Ring create(String className) {
+        try {
+            return (Ring) Class.forName(className).newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to create " + className, e);
+        }
+    }
+
+    /**
+     * Loads the vector rings and runs one vector through each to make sure the
+     * Vector API module is present
+     * @return    true if the vector rings can be used
+     */
+    private static boolean checkAvailable() {
+        try {
+            Class.forName("jdk.incubator.vector.ShortVector");
+            char[] letters = new char[64];
+            byte[] keystream = new byte[64];
+            for (int i = 0; i < letters.length; i++) {
+                letters[i] = (char) ('A' + i % 26);
+                keystream[i] = (byte) (i % 53 + 1);
+            }
+            create(ENCODER_RING).cipher(letters, keystream, new char[letters.length]);
+            create(DECODER_RING).cipher(letters, keystream, new char[letters.length]);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+}
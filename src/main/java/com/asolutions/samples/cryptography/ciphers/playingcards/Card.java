@@ -1,40 +1,186 @@
 package com.asolutions.samples.cryptography.ciphers.playingcards;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 /**
- * A playing card
+ * A playing card. Cards are immutable, and {@link #valueOf(Suit, Rank)} and {@link #forOrdinal(int)}
+ * return one shared card for each of the 54 cards in a deck, so shared cards can be compared by identity.
+ *
+ * The serialized form is the one cards have always had: the suit, the rank and an unused value,
+ * so cards serialized by earlier versions still deserialize, and resolve to the shared card.
  * @author Brian Haggard
  */
 public class Card implements Serializable {
+    /**
+     * Version of the serialized form, unchanged since cards were first serialized
+     */
+    private static final long serialVersionUID = 2348567551755280522L;
 
-    private Suit suit;
-    private Rank rank;
-    private Integer value;
+    /**
+     * Fields of the serialized form. The value field is kept for compatibility and always written as null.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("suit", Suit.class),
+            new ObjectStreamField("rank", Rank.class),
+            new ObjectStreamField("value", Integer.class)
+    };
+
+    /**
+     * Number of cards, jokers included
+     */
+    private static final int CARD_COUNT = 54;
+
+    /**
+     * Ordinal of the A joker
+     */
+    private static final int JOKER_A = 52;
+
+    /**
+     * Ordinal of the B joker
+     */
+    private static final int JOKER_B = 53;
+
+    /**
+     * One card for each ordinal
+     */
+    private static final Card[] CARDS = createCards();
+
+    private final Suit suit;
+    private final Rank rank;
+
+    /**
+     * Position of the card in a sorted deck: Ace through King of clubs, diamonds, hearts and spades, then the jokers
+     */
+    private final int ordinal;
+
+    /**
+     * Value of the card used as a keystream value, 53 for either joker
+     */
+    private final int cardValue;
 
     public Card(Suit suit, Rank rank) {
         this.suit = suit;
         this.rank = rank;
+        this.ordinal = ordinalOf(suit, rank);
+        this.cardValue = rank.value() + suit.value();
     }
 
-    public Suit getSuit() {
-        return suit;
+    /**
+     * Looks up the shared card for a suit and rank
+     * @param suit    suit of the card
+     * @param rank    rank of the card, {@link Rank#JOKER} for the joker suits
+     * @return        the shared card
+     */
+    public static Card valueOf(Suit suit, Rank rank) {
+        return CARDS[ordinalOf(suit, rank)];
     }
 
-    public void setSuit(Suit suit) {
-        this.suit = suit;
+    /**
+     * Looks up the shared card for an ordinal
+     * @param ordinal    position of the card in a sorted deck, from 0 to 53
+     * @return           the shared card
+     */
+    public static Card forOrdinal(int ordinal) {
+        return CARDS[ordinal];
+    }
+
+    public Suit getSuit() {
+        return suit;
     }
 
     public Rank getRank() {
         return rank;
     }
 
-    public void setRank(Rank rank) {
-        this.rank = rank;
+    public Integer getValue() {
+        return cardValue;
     }
 
-    public Integer getValue() {
-        return rank.getValue() + suit.getValue();
+    /**
+     * Value of the card without boxing
+     * @return    value of the card, from 1 to 52 or 53 for either joker
+     */
+    public int value() {
+        return cardValue;
+    }
+
+    /**
+     * Position of the card in a sorted deck
+     * @return    ordinal of the card, from 0 to 53
+     */
+    public int ordinal() {
+        return ordinal;
+    }
+
+    /**
+     * Writes the suit and rank in the serialized form, with the unused value as null
+     * @param out    stream the card is written to
+     * @throws IOException  If the stream cannot be written
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("suit", suit);
+        fields.put("rank", rank);
+        fields.put("value", null);
+        out.writeFields();
+    }
+
+    /**
+     * Replaces a deserialized card with the shared card for its suit and rank. Only the suit
+     * and rank are serialized, so the ordinal of a deserialized card is not yet set.
+     * @return    the shared card
+     * @throws InvalidObjectException  if the stream holds a suit and rank that are not a card
+     */
+    private Object readResolve() throws InvalidObjectException {
+        if (suit == null || rank == null) {
+            throw new InvalidObjectException("Card has no suit or rank");
+        }
+        try {
+            return valueOf(suit, rank);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+
+    /**
+     * Works out the position of a card in a sorted deck
+     * @param suit    suit of the card
+     * @param rank    rank of the card, {@link Rank#JOKER} for the joker suits
+     * @return        ordinal of the card, from 0 to 53
+     * @throws IllegalArgumentException  if the rank is a joker and the suit is not, or the other way round
+     */
+    private static int ordinalOf(Suit suit, Rank rank) {
+        if ((rank == Rank.JOKER) != (suit == Suit.JOKER_A || suit == Suit.JOKER_B)) {
+            throw new IllegalArgumentException("There is no " + rank.name().toLowerCase() + " of " + suit.name().toLowerCase());
+        }
+        if (suit == Suit.JOKER_A) {
+            return JOKER_A;
+        }
+        if (suit == Suit.JOKER_B) {
+            return JOKER_B;
+        }
+        return suit.value() + rank.value() - 1;
+    }
+
+    /**
+     * Creates one card for each ordinal: Ace through King in 4 suits plus 2 jokers
+     * @return    cards indexed by ordinal
+     */
+    private static Card[] createCards() {
+        Card[] cards = new Card[CARD_COUNT];
+        for (Suit suit : Suit.values()) {
+            for (Rank rank : Rank.values()) {
+                if ((rank == Rank.JOKER) == (suit == Suit.JOKER_A || suit == Suit.JOKER_B)) {
+                    Card card = new Card(suit, rank);
+                    cards[card.ordinal] = card;
+                }
+            }
+        }
+        return cards;
     }
 
     @Override
@@ -44,17 +190,12 @@ public class Card implements Serializable {
 
         Card card = (Card) o;
 
-        if (rank != card.rank) return false;
-        if (suit != card.suit) return false;
-
-        return true;
+        return ordinal == card.ordinal;
     }
 
     @Override
     public int hashCode() {
-        int result = suit != null ? suit.hashCode() : 0;
-        result = 31 * result + (rank != null ? rank.hashCode() : 0);
-        return result;
+        return ordinal;
     }
 
     @Override
@@ -1,23 +1,128 @@
 package com.asolutions.samples.cryptography.ciphers.playingcards;
 
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 /**
  * A deck of cards
+ *
+ * Cards are held as a primitive array of card ordinals (0-51 for Ace of Clubs through
+ * King of Spades, 52 and 53 for jokers A and B) so that generating keystream does not
+ * allocate. The cut operations copy into a reused scratch buffer which is then swapped
+ * with the card array.
  * @author Brian Haggard
  */
 public class Deck {
     /**
-     * ArrayList of cards in the order to begin encrypting or decrypting a message
+     * Number of cards in a deck, including both jokers
      */
-    private List<Card> originalOrderCards = new ArrayList<Card>();
+    private static final int DECK_SIZE = 54;
 
     /**
-     * ArrayList of cards that is manipulated during encryption or decryption of a message
+     * Ordinal of joker A
      */
-    private List<Card> cards = new ArrayList<Card>();
+    private static final int JOKER_A = 52;
+
+    /**
+     * Ordinal of joker B
+     */
+    private static final int JOKER_B = 53;
+
+    /**
+     * Number of bytes in a compact key, enough to hold 54! - 1
+     */
+    public static final int COMPACT_KEY_SIZE = 30;
+
+    /**
+     * Number of 32 bit limbs used to work on a compact key
+     */
+    private static final int COMPACT_KEY_LIMBS = 8;
+
+    /**
+     * Value of either joker
+     */
+    private static final int JOKER_VALUE = 53;
+
+    /**
+     * Node standing for the space above the top and below the bottom of the deck when
+     * fingerprinting, so the deck is a cycle of 55 nodes
+     */
+    private static final int SENTINEL = 54;
+
+    /**
+     * Random key for each ordered pair of nodes that can be next to each other in the
+     * fingerprint cycle, generated from a fixed seed so fingerprints are stable between runs.
+     * The key for an edge from one node to another is at (from << 6 | to).
+     */
+    private static final long[] EDGE_KEYS = createEdgeKeys();
+
+    /**
+     * Random number generator used when shuffling
+     */
+    private static final Random random = new Random();
+
+    /**
+     * Card ordinals in the order to begin encrypting or decrypting a message
+     */
+    private byte[] originalOrderCards = new byte[DECK_SIZE];
+
+    /**
+     * Card ordinals that are manipulated during encryption or decryption of a message
+     */
+    private byte[] cards = new byte[DECK_SIZE];
+
+    /**
+     * Buffer the cuts copy into before it is swapped with cards
+     */
+    private byte[] scratch = new byte[DECK_SIZE];
+
+    /**
+     * Current position of joker A in cards
+     */
+    private int jokerAIndex;
+
+    /**
+     * Current position of joker B in cards
+     */
+    private int jokerBIndex;
+
+    /**
+     * Number of keystream values generated since the deck was last restored
+     */
+    private long position;
+
+    /**
+     * Number of keystream values between checkpoints, or 0 if checkpoints are not kept
+     */
+    private int checkpointInterval;
+
+    /**
+     * Card ordinals of each checkpoint, 54 bytes per checkpoint. Checkpoint n is the
+     * state of the deck after (n + 1) * checkpointInterval keystream values.
+     */
+    private byte[] checkpoints = new byte[0];
+
+    /**
+     * Number of checkpoints kept
+     */
+    private int checkpointCount;
+
+    /**
+     * Fingerprint of the cards in their current order
+     */
+    private long fingerprint;
+
+    /**
+     * Fingerprint of the cards in their original order
+     */
+    private long originalFingerprint;
 
     /**
      * Default constructor creates a sorted deck of 54 cards
@@ -30,27 +135,28 @@ public class Deck {
     /**
      * Private constructor used to create a deck copy that will be able to decrypt
      * messages encrypted by the original deck.
-     * @param originalOrderCards    ArrayList of cards in the order to begin cryptography
+     * @param originalOrderCards    Card ordinals in the order to begin cryptography
      */
-    private Deck(List<Card> originalOrderCards) {
-        this.originalOrderCards.addAll(originalOrderCards);
-        this.cards.addAll(originalOrderCards);
+    private Deck(byte[] originalOrderCards) {
+        System.arraycopy(originalOrderCards, 0, this.originalOrderCards, 0, DECK_SIZE);
+        originalFingerprint = fingerprintOf(this.originalOrderCards);
+        restore();
     }
 
     /**
      * Getter method for originalOrderCards used in testing
-     * @return      originalOrderCards ArrayList
+     * @return      originalOrderCards as a list of cards
      */
     protected List<Card> getOriginalOrderCards() {
-        return originalOrderCards;
+        return toCardList(originalOrderCards);
     }
 
     /**
      * Getter method for cards used in testing
-     * @return      cards ArrayList
+     * @return      cards as a list of cards
      */
     protected List<Card> getCards() {
-        return cards;
+        return toCardList(cards);
     }
 
     /**
@@ -61,8 +167,9 @@ public class Deck {
      * @param numberOfPositions    number of positions to move the card down
      */
     protected void moveCardDown(Card card, Integer numberOfPositions) {
+        int cardIndex = indexOf(card.ordinal());
         for (int i = 0; i < numberOfPositions; i++) {
-            moveCardDown(card);
+            cardIndex = moveCardDown(cardIndex);
         }
     }
 
@@ -73,17 +180,7 @@ public class Deck {
      * @param card                 card to be moved down
      */
     protected void moveCardDown(Card card) {
-        int switchIndex;
-        int cardIndex = cards.indexOf(card);
-        if (cardIndex == cards.size() - 1) {
-            cards.remove(card);
-            cards.add(1, card);
-        } else {
-            switchIndex = cardIndex + 1;
-            Card switchCard = cards.get(switchIndex);
-            cards.set(cardIndex, switchCard);
-            cards.set(switchIndex, card);
-        }
+        moveCardDown(indexOf(card.ordinal()));
     }
 
     /**
@@ -95,18 +192,7 @@ public class Deck {
      * @param secondCutCard      Second card to search for when doing the triple cut
      */
     protected void tripleCut(Card firstCutCard, Card secondCutCard) {
-
-        int firstCutCardIndex = cards.indexOf(firstCutCard);
-        int secondCutCardIndex = cards.indexOf(secondCutCard);
-        int firstCardIndex = firstCutCardIndex < secondCutCardIndex ? firstCutCardIndex : secondCutCardIndex;
-        int secondCardIndex = firstCutCardIndex < secondCutCardIndex ? secondCutCardIndex : firstCutCardIndex;
-
-        List<Card> holdCardList = new ArrayList<Card>();
-        holdCardList.addAll(cards.subList(secondCardIndex + 1, cards.size()));
-        holdCardList.addAll(cards.subList(firstCardIndex, secondCardIndex + 1));
-        holdCardList.addAll(cards.subList(0, firstCardIndex));
-        cards.clear();
-        cards.addAll(holdCardList);
+        tripleCut(indexOf(firstCutCard.ordinal()), indexOf(secondCutCard.ordinal()));
     }
 
     /**
@@ -115,14 +201,10 @@ public class Deck {
      * top of the deck and moved to just above that bottom card.
      */
     protected void bottomValueCut() {
-        Card bottomCard = cards.get(cards.size() - 1);
-        Integer bottomCardValue = bottomCard.getValue();
-        List<Card> holdCardList = new ArrayList<Card>();
-        holdCardList.addAll(cards.subList(bottomCardValue, cards.size() - 1));
-        holdCardList.addAll(cards.subList(0, bottomCardValue));
-        holdCardList.add(bottomCard);
-        cards.clear();
-        cards.addAll(holdCardList);
+        int bottomCardValue = valueOf(cards[DECK_SIZE - 1]);
+        if (bottomCardValue != JOKER_VALUE) {
+            countCut(bottomCardValue);
+        }
     }
 
     /**
@@ -130,7 +212,7 @@ public class Deck {
      * @return    Number of cards in the deck
      */
     public Integer countCards() {
-        return cards.size();
+        return cards.length;
     }
 
     /**
@@ -139,21 +221,39 @@ public class Deck {
      *                    False results in the deck being sorted from highest value to lowest.
      */
     public void sort(boolean ascending) {
-        createdOrderedDeckOfCards();
-        if (!ascending) {
-            Collections.reverse(cards);
+        for (int i = 0; i < DECK_SIZE; i++) {
+            originalOrderCards[i] = (byte) (ascending ? i : DECK_SIZE - 1 - i);
         }
-        originalOrderCards.clear();
-        originalOrderCards.addAll(cards);
+        checkpointCount = 0;
+        originalFingerprint = fingerprintOf(originalOrderCards);
+        restore();
     }
 
     /**
      * Shuffles the deck using a Fisher-Yates shuffle
      */
     public void shuffle() {
-        Collections.shuffle(cards);
-        originalOrderCards.clear();
-        originalOrderCards.addAll(cards);
+        shuffle(random);
+    }
+
+    /**
+     * Shuffles the deck using a Fisher-Yates shuffle driven by the given generator. Pass a
+     * SecureRandom when the order will be kept as a key.
+     * @param random    random number generator that picks the swaps
+     */
+    public void shuffle(Random random) {
+        for (int i = DECK_SIZE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+        System.arraycopy(cards, 0, originalOrderCards, 0, DECK_SIZE);
+        locateJokers();
+        originalFingerprint = fingerprintOf(originalOrderCards);
+        fingerprint = originalFingerprint;
+        position = 0;
+        checkpointCount = 0;
     }
 
     /**
@@ -164,25 +264,49 @@ public class Deck {
      * The deck manipulations in order are: move joker A down 1, move joker B down 2,
      * triple cut the deck on the two jokers, and bottom value cut the deck.
      *
-     * If a joker is selected getNextCard calls itself until a non-joker card is selected.
+     * If a joker is selected the manipulations are repeated until a non-joker card is selected.
      *
      * @return The next card to be used in cryptography
      */
     public Card getNextCard() {
-        Card jokerA = new Card(Suit.JOKER_A, Rank.JOKER);
-        Card jokerB = new Card(Suit.JOKER_B, Rank.JOKER);
-        moveCardDown(jokerA);
-        moveCardDown(jokerB, 2);
-        tripleCut(jokerA, jokerB);
-        bottomValueCut();
-        Integer topCardValue = cards.get(0).getValue();
-        Card card = cards.get(topCardValue);
-        if (!card.getRank().equals(Rank.JOKER)) {
-            return card;
-        } else {
-            return getNextCard();
+        return Card.forOrdinal(nextOrdinal());
+    }
+
+    /**
+     * Fills a block of an array with the next keystream values, the same values as the cards
+     * getNextCard would return one at a time. Jokers are skipped as the deck is stepped, and
+     * no cards are created.
+     * @param out       array the keystream values are written to, from 1 to 52
+     * @param offset    position of the first value to write
+     * @param length    number of values to write
+     * @return          number of values written
+     */
+    public int generateKeystream(byte[] out, int offset, int length) {
+        if (offset < 0 || length < 0 || length > out.length - offset) {
+            throw new IndexOutOfBoundsException("Block of " + length + " values at " + offset + " does not fit in an array of " + out.length);
+        }
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (byte) (advance() + 1);
         }
+        return length;
+    }
 
+    /**
+     * Fills the remainder of a buffer with the next keystream values, advancing its position to its limit
+     * @param out    buffer the keystream values are written to, from 1 to 52
+     * @return       number of values written
+     */
+    public int generateKeystream(ByteBuffer out) {
+        int length = out.remaining();
+        if (out.hasArray()) {
+            generateKeystream(out.array(), out.arrayOffset() + out.position(), length);
+            out.position(out.limit());
+        } else {
+            for (int i = 0; i < length; i++) {
+                out.put((byte) (advance() + 1));
+            }
+        }
+        return length;
     }
 
     /**
@@ -190,8 +314,61 @@ public class Deck {
      * after the last time it was shuffled.
      */
     public void restore() {
-        cards.clear();
-        cards.addAll(originalOrderCards);
+        System.arraycopy(originalOrderCards, 0, cards, 0, DECK_SIZE);
+        locateJokers();
+        fingerprint = originalFingerprint;
+        position = 0;
+    }
+
+    /**
+     * Sets how often the deck keeps a checkpoint of its state while generating keystream.
+     * Each checkpoint takes 54 bytes; a shorter interval uses more memory and makes seek
+     * faster. Existing checkpoints are discarded.
+     * @param checkpointInterval    number of keystream values between checkpoints, or 0 to keep none
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval must not be negative");
+        }
+        this.checkpointInterval = checkpointInterval;
+        this.checkpoints = new byte[0];
+        this.checkpointCount = 0;
+    }
+
+    /**
+     * Number of keystream values generated since the deck was last restored
+     * @return    position in the keystream of the next card getNextCard returns
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Moves the deck to a position in its keystream, so that the next card getNextCard
+     * returns is the one at that position. The deck resumes from the nearest checkpoint at or
+     * before the position, or from its current state if that is nearer, and keeps checkpoints
+     * for any part of the keystream it generates for the first time.
+     * @param position    position in the keystream, 0 being the first card after restore
+     */
+    public void seek(long position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Position must not be negative");
+        }
+        long checkpoint = checkpointInterval == 0 ? 0 : Math.min(position / checkpointInterval, checkpointCount);
+        long checkpointPosition = checkpoint * checkpointInterval;
+        if (this.position > position || this.position < checkpointPosition) {
+            if (checkpoint == 0) {
+                restore();
+            } else {
+                System.arraycopy(checkpoints, (int) (checkpoint - 1) * DECK_SIZE, cards, 0, DECK_SIZE);
+                locateJokers();
+                fingerprint = fingerprintOf(cards);
+                this.position = checkpointPosition;
+            }
+        }
+        while (this.position < position) {
+            nextOrdinal();
+        }
     }
 
     /**
@@ -203,21 +380,596 @@ public class Deck {
     }
 
     /**
-     * Sets the cards array to be an array list of the 54 cards in a standard deck
-     * of cards ordered by their value.
+     * Creates a deck keyed with a passphrase. Starting from a sorted deck, each letter of
+     * the passphrase steps the deck once and then count cuts it by the letter's position in
+     * the alphabet, A being 1 and Z 26. Characters other than the letters A to Z are ignored,
+     * including letters outside the ASCII alphabet, and lower case letters are treated as
+     * upper case. Derived orders are remembered by the
+     * {@link PassphraseCache#getDefault() default passphrase cache}.
+     * @param passphrase    passphrase to key the deck with
+     * @return              a deck whose original order is derived from the passphrase
+     */
+    public static Deck fromPassphrase(String passphrase) {
+        return PassphraseCache.getDefault().getDeck(passphrase);
+    }
+
+    /**
+     * Creates a deck from a key written by toKey
+     * @param key    54 card ordinals in the order to begin cryptography
+     * @return       a deck with that original order
+     * @throws IllegalArgumentException    if the key is not an ordering of the 54 cards
+     */
+    public static Deck fromKey(byte[] key) {
+        checkOrdering(key, "Key");
+        return new Deck(key);
+    }
+
+    /**
+     * Creates a deck from a key file holding the bytes written by toKey
+     * @param keyFile    file holding the 54 card ordinals of a key
+     * @return           a deck with that original order
+     * @throws IOException    If the file cannot be read
+     * @throws IllegalArgumentException    if the file does not hold an ordering of the 54 cards
+     */
+    public static Deck readKey(File keyFile) throws IOException {
+        byte[] key = new byte[(int) keyFile.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(keyFile));
+        try {
+            in.readFully(key);
+        } finally {
+            in.close();
+        }
+        return fromKey(key);
+    }
+
+    /**
+     * Writes the original order of the deck as a key: one byte per card holding the card's
+     * ordinal, 0-51 for Ace of Clubs through King of Spades and 52 and 53 for the jokers.
+     * @return    54 card ordinals in the order to begin cryptography
      */
-    private void createdOrderedDeckOfCards() {
-        cards.clear();
-        for (Suit suit : Suit.values()) {
-            for (Rank rank : Rank.values()) {
-                if (!(suit.getValue().equals(53) || rank.equals(Rank.JOKER))) {
-                    Card card = new Card(suit, rank);
-                    cards.add(card);
-                }
+    public byte[] toKey() {
+        return originalOrderCards.clone();
+    }
+
+    /**
+     * Writes the current order of the deck in the same form as toKey. Together with
+     * getPosition it is enough to resume the keystream later with restoreState, without
+     * stepping the deck again from its original order.
+     * @return    54 card ordinals in the order the next keystream value is generated from
+     */
+    public byte[] saveState() {
+        return cards.clone();
+    }
+
+    /**
+     * Puts the cards in an order written by saveState, leaving the original order as it is
+     * @param state       54 card ordinals written by saveState on a deck with the same original order
+     * @param position    keystream position the state was saved at, as getPosition returned it
+     * @throws IllegalArgumentException    if the state is not an ordering of the 54 cards or the position is negative
+     */
+    public void restoreState(byte[] state, long position) {
+        checkOrdering(state, "State");
+        if (position < 0) {
+            throw new IllegalArgumentException("Position must not be negative");
+        }
+        System.arraycopy(state, 0, cards, 0, DECK_SIZE);
+        locateJokers();
+        fingerprint = fingerprintOf(cards);
+        this.position = position;
+    }
+
+    /**
+     * Creates a deck from a key written by toCompactKey
+     * @param compactKey    30 byte Lehmer code of the order to begin cryptography
+     * @return              a deck with that original order
+     * @throws IllegalArgumentException    if the key is not the Lehmer code of an ordering of the 54 cards
+     */
+    public static Deck fromCompactKey(byte[] compactKey) {
+        if (compactKey.length != COMPACT_KEY_SIZE) {
+            throw new IllegalArgumentException("Compact key has " + compactKey.length + " bytes instead of " + COMPACT_KEY_SIZE);
+        }
+        int[] number = new int[COMPACT_KEY_LIMBS];
+        for (int i = 0; i < COMPACT_KEY_SIZE; i++) {
+            int shift = 8 * (COMPACT_KEY_SIZE - 1 - i);
+            number[shift / 32] |= (compactKey[i] & 0xFF) << (shift % 32);
+        }
+        byte[] ordinals = new byte[DECK_SIZE];
+        int i = DECK_SIZE - 1;
+        while (i >= 0) {
+            int last = i;
+            int divisor = 1;
+            while (i >= 0 && divisor <= Integer.MAX_VALUE / (DECK_SIZE - i)) {
+                divisor *= DECK_SIZE - i--;
+            }
+            int remainder = divide(number, divisor);
+            for (int j = last; j > i; j--) {
+                ordinals[j] = (byte) (remainder % (DECK_SIZE - j));
+                remainder /= DECK_SIZE - j;
+            }
+        }
+        for (int limb : number) {
+            if (limb != 0) {
+                throw new IllegalArgumentException("Compact key is larger than the number of orderings of the " + DECK_SIZE + " cards");
             }
         }
-        cards.add(new Card(Suit.JOKER_A, Rank.JOKER));
-        cards.add(new Card(Suit.JOKER_B, Rank.JOKER));
+        long unused = (1L << DECK_SIZE) - 1;
+        for (i = 0; i < DECK_SIZE; i++) {
+            long candidates = unused;
+            for (int digit = ordinals[i]; digit > 0; digit--) {
+                candidates &= candidates - 1;
+            }
+            int ordinal = Long.numberOfTrailingZeros(candidates);
+            unused &= ~(1L << ordinal);
+            ordinals[i] = (byte) ordinal;
+        }
+        return new Deck(ordinals);
+    }
+
+    /**
+     * Writes the original order of the deck as a compact key: the Lehmer code of the order,
+     * with each card's digit being the number of cards with a lower ordinal that come after
+     * it, packed in the factorial number system into a 30 byte big endian number.
+     * @return    30 byte compact key
+     */
+    public byte[] toCompactKey() {
+        int[] number = new int[COMPACT_KEY_LIMBS];
+        long unused = (1L << DECK_SIZE) - 1;
+        int i = 0;
+        while (i < DECK_SIZE) {
+            int multiplier = 1;
+            int addend = 0;
+            while (i < DECK_SIZE && multiplier <= Integer.MAX_VALUE / (DECK_SIZE - i)) {
+                int ordinal = originalOrderCards[i];
+                multiplier *= DECK_SIZE - i;
+                addend = addend * (DECK_SIZE - i) + Long.bitCount(unused & ((1L << ordinal) - 1));
+                unused &= ~(1L << ordinal);
+                i++;
+            }
+            multiplyAdd(number, multiplier, addend);
+        }
+        byte[] compactKey = new byte[COMPACT_KEY_SIZE];
+        for (i = 0; i < COMPACT_KEY_SIZE; i++) {
+            int shift = 8 * (COMPACT_KEY_SIZE - 1 - i);
+            compactKey[i] = (byte) (number[shift / 32] >>> (shift % 32));
+        }
+        return compactKey;
+    }
+
+    /**
+     * A 64 bit fingerprint of the current order of the cards, kept up to date as the deck
+     * is stepped rather than recomputed. Decks with the same order always have the same
+     * fingerprint; decks with different orders almost never do.
+     * @return    fingerprint of the current order
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * A 64 bit fingerprint of the original order of the cards, which identifies the key
+     * @return    fingerprint of the original order
+     */
+    public long originalFingerprint() {
+        return originalFingerprint;
+    }
+
+    /**
+     * Getter method for the ordinals of originalOrderCards. The array is not copied.
+     * @return      ordinals of the cards in the order to begin cryptography
+     */
+    byte[] getOriginalOrder() {
+        return originalOrderCards;
+    }
+
+    /**
+     * Getter method for the ordinals of the cards in their current order. The array is not copied.
+     * @return      ordinals of the cards in the order the next keystream value is generated from
+     */
+    byte[] getOrder() {
+        return cards;
+    }
+
+    /**
+     * Copies the current order of another deck's cards into this deck, leaving the
+     * original order alone
+     * @param deck    deck whose current order is copied
+     */
+    void copyOrder(Deck deck) {
+        System.arraycopy(deck.cards, 0, cards, 0, DECK_SIZE);
+        jokerAIndex = deck.jokerAIndex;
+        jokerBIndex = deck.jokerBIndex;
+        fingerprint = deck.fingerprint;
+    }
+
+    /**
+     * Checks whether another deck's cards are in the same current order as this deck's,
+     * comparing fingerprints before the cards themselves
+     * @param deck    deck to compare
+     * @return        true if the cards are in the same order
+     */
+    boolean hasSameOrder(Deck deck) {
+        return fingerprint == deck.fingerprint && Arrays.equals(cards, deck.cards);
+    }
+
+    /**
+     * Steps the deck until a non-joker card is selected and returns its ordinal.
+     * @return    Ordinal of the next card to be used in cryptography
+     */
+    int nextOrdinal() {
+        return advance();
+    }
+
+    /**
+     * Keys the deck in place with a passphrase as described for {@link #fromPassphrase(String)},
+     * without the cache. The result becomes the original order. Nothing is allocated, so one
+     * deck can be keyed with any number of passphrases.
+     * @param passphrase    passphrase to key the deck with
+     */
+    void keyWithPassphrase(CharSequence passphrase) {
+        sort(true);
+        for (int i = 0; i < passphrase.length(); i++) {
+            char letter = upperCaseLetter(passphrase.charAt(i));
+            if (letter != 0) {
+                step();
+                countCut(letter - 'A' + 1);
+            }
+        }
+        System.arraycopy(cards, 0, originalOrderCards, 0, DECK_SIZE);
+        originalFingerprint = fingerprint;
+        position = 0;
+    }
+
+    /**
+     * Reduces a text to its letters A to Z in upper case. Any other character, including
+     * letters outside the ASCII alphabet, is dropped.
+     * @param text    text to reduce
+     * @return        the letters of the text
+     */
+    static String lettersOf(String text) {
+        StringBuilder letters = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char letter = upperCaseLetter(text.charAt(i));
+            if (letter != 0) {
+                letters.append(letter);
+            }
+        }
+        return letters.toString();
+    }
+
+    /**
+     * Upper cases an ASCII letter
+     * @param character    character to check
+     * @return             the letter A to Z, or 0 if the character is not one of a to z or A to Z
+     */
+    private static char upperCaseLetter(char character) {
+        if (character >= 'a' && character <= 'z') {
+            return (char) (character - ('a' - 'A'));
+        }
+        return character >= 'A' && character <= 'Z' ? character : 0;
+    }
+
+    /**
+     * Steps the deck until a non-joker card is selected, moving the position on by one and
+     * adding a checkpoint when one is due. Shared by every way of reading the keystream.
+     * @return    Ordinal of the selected card
+     */
+    private int advance() {
+        int ordinal;
+        do {
+            step();
+            ordinal = cards[valueOf(cards[0])];
+        } while (ordinal >= JOKER_A);
+        position++;
+        if (checkpointInterval != 0 && position == (long) (checkpointCount + 1) * checkpointInterval) {
+            addCheckpoint();
+        }
+        return ordinal;
+    }
+
+    /**
+     * Performs one round of deck manipulations: move joker A down 1, move joker B down 2,
+     * triple cut the deck on the two jokers, and bottom value cut the deck.
+     */
+    private void step() {
+        moveCardDown(jokerAIndex);
+        moveCardDown(jokerBIndex);
+        moveCardDown(jokerBIndex);
+        tripleCut(jokerAIndex, jokerBIndex);
+        bottomValueCut();
+    }
+
+    /**
+     * Takes the given number of cards from the top of the deck and moves them to just above the bottom card
+     * @param count    number of cards to move, from 1 to 52
+     */
+    private void countCut(int count) {
+        int remainder = DECK_SIZE - 1 - count;
+        fingerprint ^= EDGE_KEYS[SENTINEL << 6 | cards[0]] ^ EDGE_KEYS[cards[count - 1] << 6 | cards[count]]
+                ^ EDGE_KEYS[cards[DECK_SIZE - 2] << 6 | cards[DECK_SIZE - 1]];
+        System.arraycopy(cards, count, scratch, 0, remainder);
+        System.arraycopy(cards, 0, scratch, remainder, count);
+        scratch[DECK_SIZE - 1] = cards[DECK_SIZE - 1];
+        swapBuffers();
+        fingerprint ^= EDGE_KEYS[SENTINEL << 6 | cards[0]] ^ EDGE_KEYS[cards[remainder - 1] << 6 | cards[remainder]]
+                ^ EDGE_KEYS[cards[DECK_SIZE - 2] << 6 | cards[DECK_SIZE - 1]];
+        jokerAIndex = countCutIndex(jokerAIndex, count);
+        jokerBIndex = countCutIndex(jokerBIndex, count);
+    }
+
+    /**
+     * Appends the current state of the deck to the checkpoints
+     */
+    private void addCheckpoint() {
+        int offset = checkpointCount * DECK_SIZE;
+        if (offset + DECK_SIZE > checkpoints.length) {
+            byte[] grownCheckpoints = new byte[Math.max(DECK_SIZE * 16, checkpoints.length * 2)];
+            System.arraycopy(checkpoints, 0, grownCheckpoints, 0, offset);
+            checkpoints = grownCheckpoints;
+        }
+        System.arraycopy(cards, 0, checkpoints, offset, DECK_SIZE);
+        checkpointCount++;
+    }
+
+    /**
+     * Moves the card at the given position down a single position in the deck. When the
+     * bottom of the deck is reached the card will instead be moved below the top card.
+     * @param cardIndex    position of the card to move
+     * @return             new position of the card
+     */
+    private int moveCardDown(int cardIndex) {
+        byte card = cards[cardIndex];
+        int destinationIndex;
+        if (cardIndex == DECK_SIZE - 1) {
+            destinationIndex = 1;
+            fingerprint ^= edgeKey(cards, 1) ^ edgeKey(cards, DECK_SIZE - 1) ^ edgeKey(cards, DECK_SIZE);
+            System.arraycopy(cards, 1, cards, 2, DECK_SIZE - 2);
+            cards[destinationIndex] = card;
+            fingerprint ^= edgeKey(cards, 1) ^ edgeKey(cards, 2) ^ edgeKey(cards, DECK_SIZE);
+        } else {
+            destinationIndex = cardIndex + 1;
+            byte displaced = cards[destinationIndex];
+            int above = cardIndex == 0 ? SENTINEL : cards[cardIndex - 1];
+            int below = destinationIndex == DECK_SIZE - 1 ? SENTINEL : cards[destinationIndex + 1];
+            fingerprint ^= EDGE_KEYS[above << 6 | card] ^ EDGE_KEYS[card << 6 | displaced] ^ EDGE_KEYS[displaced << 6 | below]
+                    ^ EDGE_KEYS[above << 6 | displaced] ^ EDGE_KEYS[displaced << 6 | card] ^ EDGE_KEYS[card << 6 | below];
+            cards[cardIndex] = displaced;
+            cards[destinationIndex] = card;
+        }
+        jokerAIndex = card == JOKER_A ? destinationIndex : displacedIndex(jokerAIndex, cardIndex, destinationIndex);
+        jokerBIndex = card == JOKER_B ? destinationIndex : displacedIndex(jokerBIndex, cardIndex, destinationIndex);
+        return destinationIndex;
+    }
+
+    /**
+     * Performs a triple cut of the deck around the cards at the two given positions.
+     * @param firstCutIndex     position of the first cut card
+     * @param secondCutIndex    position of the second cut card
+     */
+    private void tripleCut(int firstCutIndex, int secondCutIndex) {
+        int topIndex = firstCutIndex < secondCutIndex ? firstCutIndex : secondCutIndex;
+        int bottomIndex = firstCutIndex < secondCutIndex ? secondCutIndex : firstCutIndex;
+        int bottomLength = DECK_SIZE - 1 - bottomIndex;
+        int middleLength = bottomIndex - topIndex + 1;
+        fingerprint ^= cutEdgeKeys(cards, topIndex, bottomIndex + 1);
+        System.arraycopy(cards, bottomIndex + 1, scratch, 0, bottomLength);
+        System.arraycopy(cards, topIndex, scratch, bottomLength, middleLength);
+        System.arraycopy(cards, 0, scratch, bottomLength + middleLength, topIndex);
+        swapBuffers();
+        fingerprint ^= cutEdgeKeys(cards, bottomLength, bottomLength + middleLength);
+        jokerAIndex = tripleCutIndex(jokerAIndex, topIndex, bottomIndex);
+        jokerBIndex = tripleCutIndex(jokerBIndex, topIndex, bottomIndex);
+    }
+
+    /**
+     * Works out where a card ends up when a different card is moved down one position.
+     * @param index               position of the card before the move
+     * @param movedFromIndex      position the moved card came from
+     * @param movedToIndex        position the moved card went to
+     * @return                    position of the card after the move
+     */
+    private static int displacedIndex(int index, int movedFromIndex, int movedToIndex) {
+        if (movedFromIndex == DECK_SIZE - 1) {
+            return index >= 1 ? index + 1 : index;
+        }
+        return index == movedToIndex ? movedFromIndex : index;
+    }
+
+    /**
+     * Works out where a card ends up after a triple cut.
+     * @param index          position of the card before the cut
+     * @param topIndex       position of the highest cut card
+     * @param bottomIndex    position of the lowest cut card
+     * @return               position of the card after the cut
+     */
+    private static int tripleCutIndex(int index, int topIndex, int bottomIndex) {
+        int bottomLength = DECK_SIZE - 1 - bottomIndex;
+        if (index > bottomIndex) {
+            return index - bottomIndex - 1;
+        } else if (index >= topIndex) {
+            return index - topIndex + bottomLength;
+        }
+        return index + bottomLength + bottomIndex - topIndex + 1;
+    }
+
+    /**
+     * Works out where a card ends up after a count cut.
+     * @param index    position of the card before the cut
+     * @param count    number of cards moved from the top
+     * @return         position of the card after the cut
+     */
+    private static int countCutIndex(int index, int count) {
+        if (index == DECK_SIZE - 1) {
+            return index;
+        } else if (index >= count) {
+            return index - count;
+        }
+        return index + DECK_SIZE - 1 - count;
+    }
+
+    /**
+     * Combines the keys of the edges that a triple cut breaks or joins: the edges into
+     * the two cut positions plus the edges at the top and bottom of the deck
+     * @param cards            card ordinals
+     * @param firstCutIndex    position where the middle block starts
+     * @param secondCutIndex   position just after the middle block
+     * @return                 combined keys of the edges at the cuts
+     */
+    private static long cutEdgeKeys(byte[] cards, int firstCutIndex, int secondCutIndex) {
+        long keys = edgeKey(cards, 0) ^ edgeKey(cards, DECK_SIZE);
+        if (firstCutIndex > 0) {
+            keys ^= edgeKey(cards, firstCutIndex);
+        }
+        if (secondCutIndex < DECK_SIZE) {
+            keys ^= edgeKey(cards, secondCutIndex);
+        }
+        return keys;
+    }
+
+    /**
+     * Looks up the key of the edge leading into a position of the fingerprint cycle,
+     * from the card above it, or the sentinel at the top, to the card there, or the
+     * sentinel past the bottom
+     * @param cards    card ordinals
+     * @param index    position from 0 to 54
+     * @return         key of the edge
+     */
+    private static long edgeKey(byte[] cards, int index) {
+        int from = index == 0 ? SENTINEL : cards[index - 1];
+        int to = index == DECK_SIZE ? SENTINEL : cards[index];
+        return EDGE_KEYS[from << 6 | to];
+    }
+
+    /**
+     * Computes the fingerprint of an order of cards from scratch
+     * @param cards    card ordinals
+     * @return         combined keys of all 55 edges of the fingerprint cycle
+     */
+    private static long fingerprintOf(byte[] cards) {
+        long fingerprint = 0;
+        for (int i = 0; i <= DECK_SIZE; i++) {
+            fingerprint ^= edgeKey(cards, i);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Generates the edge keys with a SplitMix64 sequence from a fixed seed
+     * @return    one random key for each ordered pair of nodes
+     */
+    private static long[] createEdgeKeys() {
+        long[] keys = new long[(SENTINEL + 1) << 6];
+        long seed = 0x536F6C6974616972L;
+        for (int i = 0; i < keys.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long key = seed;
+            key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+            key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+            keys[i] = key ^ (key >>> 31);
+        }
+        return keys;
+    }
+
+    /**
+     * Exchanges the card array with the scratch buffer after a cut has been copied into it
+     */
+    private void swapBuffers() {
+        byte[] hold = cards;
+        cards = scratch;
+        scratch = hold;
+    }
+
+    /**
+     * Finds both jokers in the card array
+     */
+    private void locateJokers() {
+        jokerAIndex = indexOf(JOKER_A);
+        jokerBIndex = indexOf(JOKER_B);
+    }
+
+    /**
+     * Finds the position of a card ordinal in the card array
+     * @param ordinal    card ordinal to search for
+     * @return           position of the card
+     */
+    private int indexOf(int ordinal) {
+        for (int i = 0; i < DECK_SIZE; i++) {
+            if (cards[i] == ordinal) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Card " + ordinal + " is not in the deck");
+    }
+
+    /**
+     * Multiplies a number by a value and adds another, in place
+     * @param number        unsigned number in 32 bit limbs, least significant first
+     * @param multiplier    value to multiply by
+     * @param addend        value to add
+     */
+    private static void multiplyAdd(int[] number, int multiplier, int addend) {
+        long carry = addend;
+        for (int i = 0; i < number.length; i++) {
+            long product = (number[i] & 0xFFFFFFFFL) * multiplier + carry;
+            number[i] = (int) product;
+            carry = product >>> 32;
+        }
+    }
+
+    /**
+     * Divides a number by a value in place
+     * @param number     unsigned number in 32 bit limbs, least significant first
+     * @param divisor    value to divide by
+     * @return           the remainder
+     */
+    private static int divide(int[] number, int divisor) {
+        long remainder = 0;
+        for (int i = number.length - 1; i >= 0; i--) {
+            long dividend = (remainder << 32) | (number[i] & 0xFFFFFFFFL);
+            number[i] = (int) (dividend / divisor);
+            remainder = dividend % divisor;
+        }
+        return (int) remainder;
+    }
+
+    /**
+     * Converts an array of card ordinals into a list of cards
+     * @param ordinals    card ordinals
+     * @return            list of cards in the same order
+     */
+    private static List<Card> toCardList(byte[] ordinals) {
+        List<Card> cardList = new ArrayList<Card>(DECK_SIZE);
+        for (byte ordinal : ordinals) {
+            cardList.add(Card.forOrdinal(ordinal));
+        }
+        return cardList;
+    }
+
+    /**
+     * Checks that an array of card ordinals is an ordering of the 54 cards
+     * @param ordinals    card ordinals to check
+     * @param name        what the ordinals are, for the exception message
+     * @throws IllegalArgumentException    if the ordinals are not an ordering of the 54 cards
+     */
+    private static void checkOrdering(byte[] ordinals, String name) {
+        if (ordinals.length != DECK_SIZE) {
+            throw new IllegalArgumentException(name + " has " + ordinals.length + " cards instead of " + DECK_SIZE);
+        }
+        long seen = 0;
+        for (byte ordinal : ordinals) {
+            if (ordinal < 0 || ordinal >= DECK_SIZE || (seen & (1L << ordinal)) != 0) {
+                throw new IllegalArgumentException(name + " is not an ordering of the " + DECK_SIZE + " cards");
+            }
+            seen |= 1L << ordinal;
+        }
+    }
+
+    /**
+     * Looks up the value of a card ordinal
+     * @param ordinal    card ordinal
+     * @return           value of the card, 53 for either joker
+     */
+    private static int valueOf(int ordinal) {
+        return ordinal < JOKER_A ? ordinal + 1 : JOKER_VALUE;
     }
 
     @Override
@@ -227,17 +979,16 @@ public class Deck {
 
         Deck deck = (Deck) o;
 
-        if (cards != null ? !cards.equals(deck.cards) : deck.cards != null) return false;
-        if (originalOrderCards != null ? !originalOrderCards.equals(deck.originalOrderCards) : deck.originalOrderCards != null)
-            return false;
+        if (fingerprint != deck.fingerprint || originalFingerprint != deck.originalFingerprint) return false;
+        if (!Arrays.equals(cards, deck.cards)) return false;
+        if (!Arrays.equals(originalOrderCards, deck.originalOrderCards)) return false;
 
         return true;
     }
 
     @Override
     public int hashCode() {
-        int result = originalOrderCards != null ? originalOrderCards.hashCode() : 0;
-        result = 31 * result + (cards != null ? cards.hashCode() : 0);
-        return result;
+        long result = 31 * originalFingerprint + fingerprint;
+        return (int) (result ^ (result >>> 32));
     }
 }
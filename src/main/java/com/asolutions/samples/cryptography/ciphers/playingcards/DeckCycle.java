@@ -0,0 +1,98 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+/**
+ * The result of analyzing the sequence of deck orders a key steps through: how many
+ * keystream values come before the sequence starts repeating and how long the repeating
+ * cycle is. Created by a {@link DeckCycleAnalyzer}.
+ * @author Brian Haggard
+ */
+public class DeckCycle {
+    /**
+     * Deck whose original order was analyzed
+     */
+    private final Deck key;
+
+    /**
+     * Number of keystream values in the repeating cycle
+     */
+    private final long cycleLength;
+
+    /**
+     * Number of keystream values before the cycle is entered
+     */
+    private final long tailLength;
+
+    /**
+     * Number of times a deck was stepped during the analysis
+     */
+    private final long steps;
+
+    /**
+     * True if the cycle was found within the step limit
+     */
+    private final boolean found;
+
+    /**
+     * Creates a result
+     * @param key            deck whose original order was analyzed
+     * @param cycleLength    number of keystream values in the cycle
+     * @param tailLength     number of keystream values before the cycle
+     * @param steps          number of times a deck was stepped
+     * @param found          true if the cycle was found within the step limit
+     */
+    DeckCycle(Deck key, long cycleLength, long tailLength, long steps, boolean found) {
+        this.key = key;
+        this.cycleLength = cycleLength;
+        this.tailLength = tailLength;
+        this.steps = steps;
+        this.found = found;
+    }
+
+    /**
+     * Returns a copy of the deck whose original order was analyzed
+     * @return    the key
+     */
+    public Deck getKey() {
+        return key.copy();
+    }
+
+    /**
+     * Number of keystream values in the repeating cycle
+     * @return    cycle length, or 0 if the cycle was not found
+     */
+    public long getCycleLength() {
+        return cycleLength;
+    }
+
+    /**
+     * Number of keystream values before the deck enters the cycle
+     * @return    tail length, or 0 if the cycle was not found
+     */
+    public long getTailLength() {
+        return tailLength;
+    }
+
+    /**
+     * Number of times a deck was stepped during the analysis
+     * @return    steps taken
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Whether the cycle was found within the step limit
+     * @return    true if the cycle and tail lengths are known
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    @Override
+    public String toString() {
+        if (!found) {
+            return "no cycle within " + steps + " steps";
+        }
+        return "cycle length " + cycleLength + ", tail length " + tailLength;
+    }
+}
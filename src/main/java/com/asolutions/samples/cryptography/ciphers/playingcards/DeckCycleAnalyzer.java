@@ -0,0 +1,157 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how long the sequence of deck orders produced by getNextCard runs before it
+ * repeats, using Brent's cycle detection. Only two decks are stepped per key, using the
+ * deck's primitive card array and fingerprint, so nothing is allocated per step and the
+ * analysis can run for hundreds of millions of steps. Each step is one keystream value,
+ * including any rounds that selected a joker.
+ * @author Brian Haggard
+ */
+public class DeckCycleAnalyzer {
+    /**
+     * Most steps taken looking for a cycle before giving up
+     */
+    private final long maximumSteps;
+
+    /**
+     * Creates an analyzer that gives up on a key after the given number of steps
+     * @param maximumSteps    most steps taken looking for the cycle of each key
+     */
+    public DeckCycleAnalyzer(long maximumSteps) {
+        if (maximumSteps < 1) {
+            throw new IllegalArgumentException("Maximum steps must be positive");
+        }
+        this.maximumSteps = maximumSteps;
+    }
+
+    /**
+     * Finds the cycle and tail length of the sequence of deck orders a key steps through
+     * @param key    deck whose original order is analyzed
+     * @return       the cycle, or a result that is not found if the step limit was reached
+     */
+    public DeckCycle analyze(Deck key) {
+        Deck tortoise = key.copy();
+        Deck hare = key.copy();
+        hare.nextOrdinal();
+        long steps = 1;
+        long power = 1;
+        long cycleLength = 1;
+        while (!hare.hasSameOrder(tortoise)) {
+            if (steps >= maximumSteps) {
+                return new DeckCycle(tortoise, 0, 0, steps, false);
+            }
+            if (power == cycleLength) {
+                tortoise.copyOrder(hare);
+                power *= 2;
+                cycleLength = 0;
+            }
+            hare.nextOrdinal();
+            cycleLength++;
+            steps++;
+        }
+        tortoise.restore();
+        hare.restore();
+        for (long i = 0; i < cycleLength; i++) {
+            hare.nextOrdinal();
+        }
+        long tailLength = 0;
+        while (!hare.hasSameOrder(tortoise)) {
+            tortoise.nextOrdinal();
+            hare.nextOrdinal();
+            tailLength++;
+        }
+        return new DeckCycle(tortoise, cycleLength, tailLength, steps + cycleLength + 2 * tailLength, true);
+    }
+
+    /**
+     * Analyzes keys in parallel on the common fork join pool
+     * @param keys    decks whose original orders are analyzed
+     * @return        the cycles in the same order as the keys
+     */
+    public List<DeckCycle> analyzeAll(List<Deck> keys) {
+        return analyzeAll(keys, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Analyzes keys in parallel, one task per key
+     * @param keys        decks whose original orders are analyzed
+     * @param executor    executor the analysis runs on
+     * @return            the cycles in the same order as the keys
+     */
+    public List<DeckCycle> analyzeAll(List<Deck> keys, ExecutorService executor) {
+        List<Callable<DeckCycle>> tasks = new ArrayList<Callable<DeckCycle>>(keys.size());
+        for (Deck key : keys) {
+            final Deck copy = key.copy();
+            tasks.add(new Callable<DeckCycle>() {
+                public DeckCycle call() {
+                    return analyze(copy);
+                }
+            });
+        }
+        List<DeckCycle> cycles = new ArrayList<DeckCycle>(keys.size());
+        try {
+            for (Future<DeckCycle> future : executor.invokeAll(tasks)) {
+                cycles.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analyzing keys", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to analyze keys", e.getCause());
+        }
+        return cycles;
+    }
+
+    /**
+     * Command line entry point. Analyzes key files written by MappedFileCipher keygen,
+     * or a number of random keys, and prints the cycle of each key and the overall rate.
+     * @param args    maximum steps followed by key files, or by --random and a count
+     * @throws IOException  If a key file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DeckCycleAnalyzer <maximum steps> <key file>...");
+            System.err.println("   or: DeckCycleAnalyzer <maximum steps> --random <count>");
+            System.exit(1);
+        }
+        DeckCycleAnalyzer analyzer = new DeckCycleAnalyzer(Long.parseLong(args[0]));
+        List<String> names = new ArrayList<String>();
+        List<Deck> keys = new ArrayList<Deck>();
+        if ("--random".equals(args[1]) && args.length == 3) {
+            for (int i = Integer.parseInt(args[2]); i > 0; i--) {
+                Deck deck = new Deck();
+                deck.shuffle();
+                names.add("random key " + keys.size());
+                keys.add(deck);
+            }
+        } else {
+            for (int i = 1; i < args.length; i++) {
+                names.add(args[i]);
+                keys.add(Deck.readKey(new File(args[i])));
+            }
+        }
+        long start = System.nanoTime();
+        List<DeckCycle> cycles = analyzer.analyzeAll(keys);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long steps = 0;
+        for (int i = 0; i < cycles.size(); i++) {
+            System.out.println(names.get(i) + ": " + cycles.get(i));
+            steps += cycles.get(i).getSteps();
+        }
+        System.out.printf("%d steps in %.1f seconds, %.0f steps per second%n", steps, seconds, steps / seconds);
+    }
+}
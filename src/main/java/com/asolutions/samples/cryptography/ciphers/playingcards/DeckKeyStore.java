@@ -0,0 +1,291 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A store of deck keys by id held in a memory mapped file. The file is an open addressing
+ * hash table of fixed size slots, each holding a key id and the 54 card ordinals of a
+ * deck's original order, so a lookup reads one or two slots straight from the page cache
+ * and never creates Card objects. Opening a store does not read the keys, so start up time
+ * does not depend on how many there are.
+ *
+ * Any number of threads can call get at once. Calls to put are serialized and exclude calls
+ * to get, since the slots are plain memory with no ordering of their own, so a get never sees
+ * a slot part way through a put and a key is visible to get on any thread once put has
+ * returned. The slot count is fixed when the store is created, at twice the requested
+ * capacity rounded up to a power of two.
+ * @author Brian Haggard
+ */
+public class DeckKeyStore implements Closeable {
+    /**
+     * Identifies a deck key store file
+     */
+    private static final int MAGIC = 0x534B4559;
+
+    /**
+     * Version of the file layout
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes before the first slot: magic, version, slot count and key count
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Position of the slot count in the header
+     */
+    private static final int SLOT_COUNT_OFFSET = 8;
+
+    /**
+     * Position of the key count in the header
+     */
+    private static final int SIZE_OFFSET = 16;
+
+    /**
+     * Bytes in each slot: a used flag, the 8 byte key id and 54 card ordinals
+     */
+    private static final int SLOT_SIZE = 64;
+
+    /**
+     * Position of the key id in a slot
+     */
+    private static final int ID_OFFSET = 1;
+
+    /**
+     * Position of the card ordinals in a slot
+     */
+    private static final int CARDS_OFFSET = 9;
+
+    /**
+     * Number of cards in a deck key
+     */
+    private static final int DECK_SIZE = 54;
+
+    /**
+     * Slots in each mapped segment of the file, 1 GB worth
+     */
+    private static final int SLOTS_PER_SEGMENT_SHIFT = 24;
+
+    /**
+     * Marks a slot that holds a key
+     */
+    private static final byte USED = 1;
+
+    /**
+     * The open file
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Mapped header of the file
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * Mapped segments of slots
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Number of slots, a power of two
+     */
+    private final long slotCount;
+
+    /**
+     * Lock held shared by get and exclusively by put, which orders slot writes before the reads that see them
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Number of keys in the store, volatile so that size() does not need the lock
+     */
+    private volatile long size;
+
+    /**
+     * Opens a key store, creating it with room for at least the given number of keys if
+     * the file does not exist or is empty
+     * @param storeFile    file holding the store
+     * @param capacity     number of keys a new store must hold
+     * @throws IOException  If the file cannot be opened or is not a deck key store
+     */
+    public DeckKeyStore(File storeFile, long capacity) throws IOException {
+        file = new RandomAccessFile(storeFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            boolean created = channel.size() == 0;
+            if (created) {
+                long slots = Long.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+                file.setLength(HEADER_SIZE + slots * SLOT_SIZE);
+            }
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putLong(SLOT_COUNT_OFFSET, (channel.size() - HEADER_SIZE) / SLOT_SIZE);
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(storeFile + " is not a deck key store");
+            }
+            slotCount = header.getLong(SLOT_COUNT_OFFSET);
+            size = header.getLong(SIZE_OFFSET);
+            long slotsPerSegment = 1L << SLOTS_PER_SEGMENT_SHIFT;
+            segments = new MappedByteBuffer[(int) ((slotCount + slotsPerSegment - 1) / slotsPerSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                long slots = Math.min(slotsPerSegment, slotCount - i * slotsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * slotsPerSegment * SLOT_SIZE, slots * SLOT_SIZE);
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up the deck for a key id
+     * @param id    key id
+     * @return      a new deck with the stored original order, or null if there is no key with that id
+     */
+    public Deck get(long id) {
+        byte[] key = new byte[DECK_SIZE];
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            long slot = find(id);
+            MappedByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset) != USED) {
+                return null;
+            }
+            for (int i = 0; i < DECK_SIZE; i++) {
+                key[i] = segment.get(offset + CARDS_OFFSET + i);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Deck.fromKey(key);
+    }
+
+    /**
+     * Stores the original order of a deck under a new key id. A stored key is never
+     * rewritten, so a reader can not see a slot part way through an update.
+     * @param id      key id
+     * @param deck    deck whose original order is stored
+     * @return        true if the key was added, false if the id already has a key
+     * @throws IllegalStateException    if the store is full
+     */
+    public boolean put(long id, Deck deck) {
+        lock.writeLock().lock();
+        try {
+            long slot = find(id);
+            MappedByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset) == USED) {
+                return false;
+            }
+            if (size + 1 >= slotCount) {
+                throw new IllegalStateException("Deck key store is full");
+            }
+            byte[] key = deck.getOriginalOrder();
+            for (int i = 0; i < DECK_SIZE; i++) {
+                segment.put(offset + CARDS_OFFSET + i, key[i]);
+            }
+            segment.putLong(offset + ID_OFFSET, id);
+            segment.put(offset, USED);
+            header.putLong(SIZE_OFFSET, size + 1);
+            size = size + 1;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of keys in the store
+     * @return    the number of keys
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes any changes to the storage device
+     */
+    public void force() {
+        lock.writeLock().lock();
+        try {
+            header.force();
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the store file. Mapped memory is released once the store is garbage collected.
+     * @throws IOException  If the file cannot be closed
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Finds the slot holding a key id, or the empty slot where it would be added
+     * @param id    key id
+     * @return      slot number
+     */
+    private long find(long id) {
+        long slot = hash(id) & (slotCount - 1);
+        while (true) {
+            MappedByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset) != USED || segment.getLong(offset + ID_OFFSET) == id) {
+                return slot;
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+    }
+
+    /**
+     * Finds the mapped segment holding a slot
+     * @param slot    slot number
+     * @return        the segment
+     */
+    private MappedByteBuffer segment(long slot) {
+        return segments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+    }
+
+    /**
+     * Finds the position of a slot in its segment
+     * @param slot    slot number
+     * @return        position of the slot
+     */
+    private static int offset(long slot) {
+        return (int) (slot & ((1L << SLOTS_PER_SEGMENT_SHIFT) - 1)) * SLOT_SIZE;
+    }
+
+    /**
+     * Spreads the bits of a key id so that consecutive ids land in scattered slots
+     * @param id    key id
+     * @return      hash of the id
+     */
+    private static long hash(long id) {
+        long hash = id;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
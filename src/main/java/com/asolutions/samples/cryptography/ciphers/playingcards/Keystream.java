@@ -0,0 +1,128 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.util.Arrays;
+
+/**
+ * The keystream values a deck produces from its original order, kept so that
+ * messages under the same key do not have to step the deck again.
+ * Keystreams are created and extended by a {@link KeystreamCache}.
+ * @author Brian Haggard
+ */
+public class Keystream {
+    /**
+     * Capacity of a new keystream
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Copy of the deck positioned just after the last generated value
+     */
+    private final Deck generator;
+
+    /**
+     * Keystream values generated so far, from 1 to 52
+     */
+    private volatile byte[] values = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Number of keystream values generated so far
+     */
+    private volatile int length;
+
+    /**
+     * Number of bytes the cache holding this keystream has counted for it. Read and written
+     * only under that cache's lock.
+     */
+    int accountedBytes;
+
+    /**
+     * Creates an empty keystream for the original order of a deck
+     * @param deck    deck whose original order produces the keystream
+     */
+    Keystream(Deck deck) {
+        this.generator = deck.copy();
+    }
+
+    /**
+     * Generates keystream values until at least the given number are available
+     * @param length    number of keystream values needed
+     * @return          number of bytes the keystream grew by
+     */
+    synchronized int extend(int length) {
+        if (length <= this.length) {
+            return 0;
+        }
+        byte[] extendedValues = values;
+        int growth = 0;
+        if (length > extendedValues.length) {
+            byte[] grownValues = new byte[Math.max(length, extendedValues.length * 2)];
+            System.arraycopy(extendedValues, 0, grownValues, 0, this.length);
+            growth = grownValues.length - extendedValues.length;
+            extendedValues = grownValues;
+        }
+        generator.generateKeystream(extendedValues, this.length, length - this.length);
+        values = extendedValues;
+        this.length = length;
+        return growth;
+    }
+
+    /**
+     * Checks whether this keystream is the one produced by the original order of a deck
+     * @param deck    deck to check
+     * @return        true if the deck has the same original order as this keystream's
+     */
+    boolean isFor(Deck deck) {
+        return Arrays.equals(generator.getOriginalOrder(), deck.getOriginalOrder());
+    }
+
+    /**
+     * Number of bytes held by this keystream
+     * @return    size of the value buffer
+     */
+    int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Number of keystream values generated so far
+     * @return    length of the keystream
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns a keystream value
+     * @param position    position in the keystream, starting at 0
+     * @return            value of the card at that position, from 1 to 52
+     */
+    public int getValue(int position) {
+        if (position >= length) {
+            throw new IndexOutOfBoundsException("Position " + position + " is past the end of the keystream");
+        }
+        return values[position];
+    }
+
+    /**
+     * Copies a block of keystream values
+     * @param position    position in the keystream of the first value to copy
+     * @param out         array the values are copied to
+     * @param offset      position in out of the first value
+     * @param length      number of values to copy
+     */
+    public void getValues(int position, byte[] out, int offset, int length) {
+        if (position + length > this.length) {
+            throw new IndexOutOfBoundsException("Position " + (position + length) + " is past the end of the keystream");
+        }
+        System.arraycopy(values, position, out, offset, length);
+    }
+
+    /**
+     * Returns the card at a position in the keystream
+     * @param position    position in the keystream, starting at 0
+     * @return            the card the deck selected at that position
+     */
+    public Card getCard(int position) {
+        return Card.forOrdinal(getValue(position) - 1);
+    }
+}
@@ -0,0 +1,185 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of keystreams keyed by the fingerprint of the original order of a deck, which is
+ * checked against the order itself on every hit. Each keystream grows
+ * only when a longer message than any before it arrives. Each entry is counted as its
+ * keystream values plus a fixed allowance for the map entry, the keystream and its deck,
+ * and when the entries come to more than the maximum number of bytes the least recently
+ * used ones are evicted.
+ *
+ * Shuffling or sorting a deck changes its original order, so the deck maps to a
+ * different keystream afterwards and never reads one generated for its old order.
+ * @author Brian Haggard
+ */
+public class KeystreamCache {
+    /**
+     * Maximum size of the cache created by the default constructor, in bytes
+     */
+    public static final int DEFAULT_MAXIMUM_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Bytes counted for each entry on top of its keystream values: the map entry and its
+     * Long key, the Keystream and its value array header, and the Deck copy with its three
+     * card arrays, rounded up
+     */
+    static final int ENTRY_OVERHEAD = 512;
+
+    /**
+     * Cache shared by ciphers that do not supply their own
+     */
+    private static final KeystreamCache defaultCache = new KeystreamCache();
+
+    /**
+     * Keystreams by original deck fingerprint, least recently used first
+     */
+    private final Map<Long, Keystream> keystreams = new LinkedHashMap<Long, Keystream>(16, 0.75f, true);
+
+    /**
+     * Maximum number of bytes held by the cache
+     */
+    private final int maximumBytes;
+
+    /**
+     * Number of bytes currently held by the cache, counting each entry's allowance
+     */
+    private int bytes;
+
+    /**
+     * Default constructor creates a cache holding at most {@link #DEFAULT_MAXIMUM_BYTES}
+     */
+    public KeystreamCache() {
+        this(DEFAULT_MAXIMUM_BYTES);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of bytes
+     * @param maximumBytes    memory cap for all cached keystreams and their entries
+     */
+    public KeystreamCache(int maximumBytes) {
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Returns the cache shared by ciphers that do not supply their own
+     * @return    the default cache
+     */
+    public static KeystreamCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Returns the keystream for the original order of a deck holding at least the given
+     * number of values. A keystream longer than the whole cache is generated without
+     * being cached. Values are generated outside the cache lock, so decks with different
+     * original orders never wait on each other.
+     * @param deck      deck whose original order produces the keystream
+     * @param length    number of keystream values needed
+     * @return          keystream with at least length values
+     */
+    public Keystream getKeystream(Deck deck, int length) {
+        Long key = deck.originalFingerprint();
+        Keystream keystream = lookup(key, deck, length);
+        if (keystream.extend(length) > 0) {
+            grow(key, keystream);
+        }
+        return keystream;
+    }
+
+    /**
+     * Number of bytes currently held by the cache, counting each entry's allowance
+     * @return    size of the cache
+     */
+    public synchronized int size() {
+        return bytes;
+    }
+
+    /**
+     * Removes every keystream from the cache
+     */
+    public synchronized void clear() {
+        keystreams.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Size of the cached entries worked out from scratch, used in testing to check the byte count against
+     * @return    sum of the capacities of the cached keystreams and their allowances
+     */
+    synchronized int measuredSize() {
+        int total = 0;
+        for (Keystream keystream : keystreams.values()) {
+            total += keystream.capacity() + ENTRY_OVERHEAD;
+        }
+        return total;
+    }
+
+    /**
+     * Finds the keystream for an original deck order, creating and caching one if needed and
+     * evicting the least recently used keystreams to make room for it
+     * @param key       fingerprint of the original deck order
+     * @param deck      deck with that original order
+     * @param length    number of keystream values needed
+     * @return          the cached keystream, or an uncached one if length is past the memory cap
+     *                  or a different order with the same fingerprint is cached
+     */
+    private synchronized Keystream lookup(Long key, Deck deck, int length) {
+        Keystream keystream = keystreams.get(key);
+        if (keystream != null && !keystream.isFor(deck)) {
+            return new Keystream(deck);
+        }
+        if (keystream == null) {
+            keystream = new Keystream(deck);
+            if (Math.max(length, keystream.capacity()) <= maximumBytes - ENTRY_OVERHEAD) {
+                keystreams.put(key, keystream);
+                keystream.accountedBytes = keystream.capacity() + ENTRY_OVERHEAD;
+                bytes += keystream.accountedBytes;
+                evict(keystream);
+            }
+        }
+        return keystream;
+    }
+
+    /**
+     * Accounts for a cached keystream that has grown, removing it if it no longer fits
+     * and evicting the least recently used keystreams otherwise. The keystream grows outside
+     * the cache lock, so the byte count is brought up to its current capacity from the size it
+     * was last accounted at; a keystream evicted in the meantime has already had its
+     * accounted size taken off and is left alone.
+     * @param key          fingerprint of the original deck order
+     * @param keystream    keystream that has grown
+     */
+    private synchronized void grow(Long key, Keystream keystream) {
+        if (keystreams.get(key) != keystream) {
+            return;
+        }
+        int capacity = keystream.capacity();
+        if (capacity > maximumBytes - ENTRY_OVERHEAD) {
+            keystreams.remove(key);
+            bytes -= keystream.accountedBytes;
+        } else {
+            bytes += capacity + ENTRY_OVERHEAD - keystream.accountedBytes;
+            keystream.accountedBytes = capacity + ENTRY_OVERHEAD;
+            evict(keystream);
+        }
+    }
+
+    /**
+     * Evicts the least recently used keystreams until the cache fits in its memory cap
+     * @param keep    keystream being returned, which is never evicted
+     */
+    private void evict(Keystream keep) {
+        Iterator<Keystream> iterator = keystreams.values().iterator();
+        while (bytes > maximumBytes && iterator.hasNext()) {
+            Keystream keystream = iterator.next();
+            if (keystream != keep) {
+                bytes -= keystream.accountedBytes;
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The keystream of a deck's original order precomputed to a file, one byte per value, and
+ * memory mapped when it is read so that a hot key's keystream is a sequential read rather than
+ * deck stepping. Past the end of the file the keystream is generated live, starting from the
+ * deck state saved in the header, so a pad of any length serves messages of any length.
+ *
+ * The header holds the fingerprint and the original order of the deck the pad was made from,
+ * and opening a pad for a different deck fails. The header is written last, so a pad left
+ * incomplete by a crash is not recognised.
+ *
+ * Any number of threads can read a pad at once; reads past the end of the file are serialized.
+ * @author Brian Haggard
+ */
+public class KeystreamPad implements Closeable {
+    /**
+     * Identifies a keystream pad file
+     */
+    private static final int MAGIC = 0x53504144;
+
+    /**
+     * Version of the file layout
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes before the first keystream value: magic, version, fingerprint, length, original order and end order
+     */
+    private static final int HEADER_SIZE = 256;
+
+    /**
+     * Position of the deck fingerprint in the header
+     */
+    private static final int FINGERPRINT_OFFSET = 8;
+
+    /**
+     * Position of the number of keystream values in the header
+     */
+    private static final int LENGTH_OFFSET = 16;
+
+    /**
+     * Position of the deck's original order in the header
+     */
+    private static final int ORIGINAL_ORDER_OFFSET = 24;
+
+    /**
+     * Position in the header of the deck's order after the last value in the file
+     */
+    private static final int END_ORDER_OFFSET = 78;
+
+    /**
+     * Number of cards in a deck
+     */
+    private static final int DECK_SIZE = 54;
+
+    /**
+     * Keystream values in each mapped segment of the file, 1 GB worth
+     */
+    private static final int VALUES_PER_SEGMENT_SHIFT = 30;
+
+    /**
+     * Number of live keystream values between checkpoints of the deck past the end of the file
+     */
+    private static final int TAIL_CHECKPOINT_INTERVAL = 64 * 1024;
+
+    /**
+     * Number of keystream values generated and written at a time when a pad is created
+     */
+    private static final int WRITE_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The open file
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Mapped segments of keystream values
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Number of keystream values in the file
+     */
+    private final long length;
+
+    /**
+     * Original order of the deck the pad was made from
+     */
+    private final byte[] originalOrder;
+
+    /**
+     * Deck that generates the keystream past the end of the file
+     */
+    private final Deck tail;
+
+    /**
+     * Opens a pad for a deck
+     * @param padFile    file written by {@link #create(Deck, long, File)}
+     * @param deck       deck whose original order the pad must have been made from
+     * @throws IOException  If the file cannot be read, is not a keystream pad or is corrupt, or was made from a different deck
+     */
+    public KeystreamPad(File padFile, Deck deck) throws IOException {
+        file = new RandomAccessFile(padFile, "r");
+        boolean opened = false;
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(padFile + " is not a keystream pad");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(padFile + " is not a keystream pad");
+            }
+            originalOrder = new byte[DECK_SIZE];
+            byte[] endOrder = new byte[DECK_SIZE];
+            for (int i = 0; i < DECK_SIZE; i++) {
+                originalOrder[i] = header.get(ORIGINAL_ORDER_OFFSET + i);
+                endOrder[i] = header.get(END_ORDER_OFFSET + i);
+            }
+            if (header.getLong(FINGERPRINT_OFFSET) != deck.originalFingerprint() || !Arrays.equals(originalOrder, deck.getOriginalOrder())) {
+                throw new IOException(padFile + " is a keystream pad for a different deck");
+            }
+            length = header.getLong(LENGTH_OFFSET);
+            if (length < 0 || length > channel.size() - HEADER_SIZE) {
+                throw new IOException(padFile + " has a length of " + length + " in its header, which does not fit the file");
+            }
+            try {
+                tail = Deck.fromKey(endOrder);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(padFile + " has a corrupt deck order in its header", e);
+            }
+            tail.setCheckpointInterval(TAIL_CHECKPOINT_INTERVAL);
+            long valuesPerSegment = 1L << VALUES_PER_SEGMENT_SHIFT;
+            segments = new MappedByteBuffer[(int) ((length + valuesPerSegment - 1) / valuesPerSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                long values = Math.min(valuesPerSegment, length - i * valuesPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + i * valuesPerSegment, values);
+            }
+            opened = true;
+        } finally {
+            if (!opened) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the first values of the keystream of a deck's original order to a pad file
+     * @param deck       deck whose original order produces the keystream; it is not stepped
+     * @param length     number of keystream values to write
+     * @param padFile    file to write, replaced if it exists
+     * @throws IOException  If the file cannot be written
+     */
+    public static void create(Deck deck, long length, File padFile) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Pad length must not be negative");
+        }
+        Deck generator = deck.copy();
+        byte[] block = new byte[(int) Math.min(WRITE_BLOCK_SIZE, Math.max(length, 1))];
+        RandomAccessFile out = new RandomAccessFile(padFile, "rw");
+        try {
+            out.setLength(0);
+            out.write(new byte[HEADER_SIZE]);
+            for (long written = 0; written < length; ) {
+                int count = (int) Math.min(block.length, length - written);
+                generator.generateKeystream(block, 0, count);
+                out.write(block, 0, count);
+                written += count;
+            }
+            out.seek(FINGERPRINT_OFFSET);
+            out.writeLong(generator.originalFingerprint());
+            out.writeLong(length);
+            out.write(generator.getOriginalOrder());
+            out.write(generator.getOrder());
+            out.getFD().sync();
+            out.seek(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Command line entry point: precomputes a pad for a key file written by MappedFileCipher keygen.
+     * Usage: KeystreamPad &lt;key file&gt; &lt;length&gt; &lt;pad file&gt;
+     * @param args    command line arguments
+     * @throws IOException    If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: KeystreamPad <key file> <length> <pad file>");
+            System.exit(1);
+        }
+        Deck deck = Deck.readKey(new File(args[0]));
+        long length = Long.parseLong(args[1]);
+        long start = System.nanoTime();
+        create(deck, length, new File(args[2]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %d keystream values to %s in %.1f s%n", length, args[2], seconds);
+    }
+
+    /**
+     * Number of keystream values held in the file; values past this are generated live
+     * @return    length of the pad
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Checks whether this pad holds the keystream of a deck's original order
+     * @param deck    deck to check
+     * @return        true if the deck has the original order the pad was made from
+     */
+    public boolean isFor(Deck deck) {
+        return Arrays.equals(originalOrder, deck.getOriginalOrder());
+    }
+
+    /**
+     * Copies a block of keystream values, reading from the file as far as it goes and
+     * generating the rest
+     * @param position    position in the keystream of the first value to copy
+     * @param out         array the values are copied to, from 1 to 52
+     * @param offset      position in out of the first value
+     * @param count       number of values to copy
+     * @throws IllegalStateException  if a value read from the file is not from 1 to 52
+     */
+    public void getValues(long position, byte[] out, int offset, int count) {
+        if (position < 0 || offset < 0 || count < 0 || count > out.length - offset) {
+            throw new IndexOutOfBoundsException("Block of " + count + " values at " + offset + " does not fit in an array of " + out.length);
+        }
+        int fromFile = (int) Math.max(0, Math.min(count, length - position));
+        for (int i = 0; i < fromFile; ) {
+            long index = position + i;
+            ByteBuffer segment = segments[(int) (index >>> VALUES_PER_SEGMENT_SHIFT)].duplicate();
+            int segmentOffset = (int) (index & ((1L << VALUES_PER_SEGMENT_SHIFT) - 1));
+            int run = Math.min(fromFile - i, segment.capacity() - segmentOffset);
+            segment.position(segmentOffset);
+            segment.get(out, offset + i, run);
+            for (int j = offset + i; j < offset + i + run; j++) {
+                if (out[j] < 1 || out[j] > 52) {
+                    throw new IllegalStateException("Keystream pad holds " + out[j] + " at position " + (position + j - offset) + ", not a keystream value");
+                }
+            }
+            i += run;
+        }
+        if (fromFile < count) {
+            synchronized (tail) {
+                tail.seek(position + fromFile - length);
+                tail.generateKeystream(out, offset + fromFile, count - fromFile);
+            }
+        }
+    }
+
+    /**
+     * Closes the pad file. Mapped memory is released once the pad is garbage collected.
+     * @throws IOException  If the file cannot be closed
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,262 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates the keystream of a deck's original order on a producer thread of its own, so that
+ * stepping the deck overlaps with whatever the reading thread does with the values.
+ *
+ * The producer fills fixed size blocks of a ring buffer allocated up front and publishes each
+ * block by advancing a sequence number; the single reader copies values out and hands blocks
+ * back by advancing a second sequence number. Neither side takes a lock. The two sequence
+ * numbers are kept 128 bytes apart so that the producer and reader do not false share a cache line.
+ * When one side gets ahead it spins briefly, then yields, then parks.
+ *
+ * Only one thread may read from a pipeline. Close it to stop the producer.
+ * @author Brian Haggard
+ */
+public class KeystreamPipeline implements Closeable {
+    /**
+     * Number of keystream values in a block of the ring buffer created by the short constructor
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /**
+     * Number of blocks in the ring buffer created by the short constructor
+     */
+    public static final int DEFAULT_BLOCK_COUNT = 16;
+
+    /**
+     * Number of longs between the two sequence numbers and around them, 128 bytes
+     */
+    private static final int PADDING = 16;
+
+    /**
+     * Index of the number of blocks the producer has published
+     */
+    private static final int PRODUCED = PADDING;
+
+    /**
+     * Index of the number of blocks the reader has handed back
+     */
+    private static final int CONSUMED = PADDING * 2;
+
+    /**
+     * Number of times a waiting side spins before it starts yielding
+     */
+    private static final int SPINS = 100;
+
+    /**
+     * Number of times a waiting side yields before it starts parking
+     */
+    private static final int YIELDS = 200;
+
+    /**
+     * How long a waiting side parks for at a time, in nanoseconds
+     */
+    private static final long PARK_NANOS = 50000;
+
+    /**
+     * Deck stepped by the producer, a copy owned by this pipeline
+     */
+    private final Deck deck;
+
+    /**
+     * Number of keystream values in each block
+     */
+    private final int blockSize;
+
+    /**
+     * Number of blocks less one, for wrapping block numbers onto the ring buffer
+     */
+    private final int blockMask;
+
+    /**
+     * Ring buffer of blocks of keystream values
+     */
+    private final byte[] blocks;
+
+    /**
+     * Sequence numbers of the producer and the reader, padded apart
+     */
+    private final AtomicLongArray sequences = new AtomicLongArray(PADDING * 3);
+
+    /**
+     * Thread stepping the deck
+     */
+    private final Thread producer;
+
+    /**
+     * Set when the pipeline is closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * Error that stopped the producer, if any
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Number of the block the reader is reading
+     */
+    private long readBlock;
+
+    /**
+     * Position in the block the reader is reading of its next value
+     */
+    private int readOffset;
+
+    /**
+     * Number of published blocks last seen by the reader
+     */
+    private long producedBlocks;
+
+    /**
+     * Starts a pipeline with the default ring buffer size
+     * @param deck    deck whose original order produces the keystream
+     */
+    public KeystreamPipeline(Deck deck) {
+        this(deck, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT);
+    }
+
+    /**
+     * Starts a pipeline that generates the keystream of a deck's original order from its first value
+     * @param deck          deck whose original order produces the keystream, copied so the caller's deck is never stepped
+     * @param blockSize     number of keystream values the producer publishes at a time
+     * @param blockCount    number of blocks in the ring buffer, a power of two
+     */
+    public KeystreamPipeline(Deck deck, int blockSize, int blockCount) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        if (blockCount < 1 || Integer.bitCount(blockCount) != 1) {
+            throw new IllegalArgumentException("Block count must be a power of two");
+        }
+        if ((long) blockSize * blockCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ring buffer of " + blockCount + " blocks of " + blockSize + " is too large");
+        }
+        this.deck = deck.copy();
+        this.blockSize = blockSize;
+        this.blockMask = blockCount - 1;
+        this.blocks = new byte[blockSize * blockCount];
+        this.producer = new Thread(new Runnable() {
+            public void run() {
+                produce();
+            }
+        }, "keystream-pipeline");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    /**
+     * Reads the next keystream values, waiting for the producer if it has not generated them yet
+     * @param out       array the keystream values are written to, from 1 to 52
+     * @param offset    position of the first value to write
+     * @param length    number of values to read
+     * @return          number of values read, always length
+     * @throws IllegalStateException  if the pipeline is closed or its producer failed
+     */
+    public int read(byte[] out, int offset, int length) {
+        if (offset < 0 || length < 0 || length > out.length - offset) {
+            throw new IndexOutOfBoundsException("Block of " + length + " values at " + offset + " does not fit in an array of " + out.length);
+        }
+        checkOpen();
+        int position = offset;
+        int end = offset + length;
+        int waits = 0;
+        while (position < end) {
+            if (readBlock == producedBlocks) {
+                producedBlocks = sequences.get(PRODUCED);
+                if (readBlock == producedBlocks) {
+                    checkOpen();
+                    idle(waits++);
+                    continue;
+                }
+            }
+            int count = Math.min(end - position, blockSize - readOffset);
+            System.arraycopy(blocks, (int) (readBlock & blockMask) * blockSize + readOffset, out, position, count);
+            position += count;
+            readOffset += count;
+            if (readOffset == blockSize) {
+                readOffset = 0;
+                sequences.lazySet(CONSUMED, ++readBlock);
+            }
+            waits = 0;
+        }
+        return length;
+    }
+
+    /**
+     * Stops the producer and waits for it to finish. Reading afterwards fails.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+        boolean interrupted = false;
+        while (producer.isAlive()) {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Body of the producer thread: fills free blocks of the ring buffer until the pipeline is closed
+     */
+    private void produce() {
+        try {
+            long nextBlock = 0;
+            long consumedBlocks = 0;
+            int waits = 0;
+            while (!closed) {
+                if (nextBlock - consumedBlocks > blockMask) {
+                    consumedBlocks = sequences.get(CONSUMED);
+                    if (nextBlock - consumedBlocks > blockMask) {
+                        idle(waits++);
+                        continue;
+                    }
+                }
+                deck.generateKeystream(blocks, (int) (nextBlock & blockMask) * blockSize, blockSize);
+                sequences.lazySet(PRODUCED, ++nextBlock);
+                waits = 0;
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Throws if the reader can never get more values
+     * @throws IllegalStateException  if the pipeline is closed or its producer failed
+     */
+    private void checkOpen() {
+        if (failure != null) {
+            throw new IllegalStateException("Keystream producer failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Keystream pipeline is closed");
+        }
+    }
+
+    /**
+     * Waits a little for the other side, backing off from spinning to yielding to parking
+     * @param waits    number of times this side has already waited in a row
+     */
+    private static void idle(int waits) {
+        if (waits < SPINS) {
+            return;
+        }
+        if (waits < YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
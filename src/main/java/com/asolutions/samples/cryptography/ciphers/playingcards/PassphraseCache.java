@@ -0,0 +1,108 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the original deck orders derived from passphrases, so a passphrase used for
+ * many sessions is only keyed once. Passphrases are reduced to their letters in upper case
+ * before lookup, since keying ignores everything else. When the cache holds more than its
+ * maximum number of orders the least recently used one is evicted.
+ * @author Brian Haggard
+ */
+public class PassphraseCache {
+    /**
+     * Maximum number of orders held by the cache created by the default constructor
+     */
+    public static final int DEFAULT_MAXIMUM_ENTRIES = 1024;
+
+    /**
+     * Cache used by {@link Deck#fromPassphrase(String)}
+     */
+    private static final PassphraseCache defaultCache = new PassphraseCache();
+
+    /**
+     * Original deck orders by passphrase letters, least recently used first
+     */
+    private final Map<String, byte[]> orders;
+
+    /**
+     * Default constructor creates a cache holding at most {@link #DEFAULT_MAXIMUM_ENTRIES}
+     */
+    public PassphraseCache() {
+        this(DEFAULT_MAXIMUM_ENTRIES);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of deck orders
+     * @param maximumEntries    number of passphrases remembered
+     */
+    public PassphraseCache(final int maximumEntries) {
+        this.orders = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maximumEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache used by {@link Deck#fromPassphrase(String)}
+     * @return    the default cache
+     */
+    public static PassphraseCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Returns a new deck keyed with a passphrase, keying it only if the passphrase is not
+     * cached. Keying happens outside the cache lock, so threads keying different
+     * passphrases never wait on each other.
+     * @param passphrase    passphrase to key the deck with
+     * @return              a new deck whose original order is derived from the passphrase
+     */
+    public Deck getDeck(String passphrase) {
+        String letters = Deck.lettersOf(passphrase);
+        byte[] order = lookup(letters);
+        if (order != null) {
+            return Deck.fromKey(order);
+        }
+        Deck deck = new Deck();
+        deck.keyWithPassphrase(letters);
+        store(letters, deck.toKey());
+        return deck;
+    }
+
+    /**
+     * Number of deck orders currently held by the cache
+     * @return    size of the cache
+     */
+    public synchronized int size() {
+        return orders.size();
+    }
+
+    /**
+     * Removes every deck order from the cache
+     */
+    public synchronized void clear() {
+        orders.clear();
+    }
+
+    /**
+     * Finds the cached order for passphrase letters
+     * @param letters    letters of the passphrase in upper case
+     * @return           the order, or null if it is not cached
+     */
+    private synchronized byte[] lookup(String letters) {
+        return orders.get(letters);
+    }
+
+    /**
+     * Caches the order derived from passphrase letters
+     * @param letters    letters of the passphrase in upper case
+     * @param order      original deck order derived from the letters
+     */
+    private synchronized void store(String letters, byte[] order) {
+        orders.put(letters, order);
+    }
+}
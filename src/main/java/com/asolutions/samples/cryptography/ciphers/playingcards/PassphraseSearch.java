@@ -0,0 +1,185 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recovers the passphrase of a message from a known plain text and its cipher text by
+ * trying every passphrase in a word list, for training exercises on why passphrase keys
+ * need to be long. The keystream the message was enciphered with is worked out from the
+ * two texts, and each candidate deck is stepped only until its keystream first disagrees,
+ * which for a wrong passphrase is usually the first letter. The word list is split across
+ * a fork join pool and each task keys a single deck over and over, so nothing is allocated
+ * per candidate.
+ * @author Brian Haggard
+ */
+public class PassphraseSearch {
+    /**
+     * Number of candidates a task tries itself rather than splitting
+     */
+    private static final int CANDIDATES_PER_TASK = 256;
+
+    /**
+     * Number of letters in the alphabet
+     */
+    private static final int ALPHABET_SIZE = 26;
+
+    /**
+     * Keystream values of the message reduced modulo 26
+     */
+    private final byte[] keystream;
+
+    /**
+     * Pool the search runs on
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a search for the passphrase of a message on the common fork join pool
+     * @param plainText     known plain text of the message
+     * @param cipherText    cipher text the passphrase's deck produced from the plain text
+     */
+    public PassphraseSearch(String plainText, String cipherText) {
+        this(plainText, cipherText, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a search for the passphrase of a message. Both texts are reduced to their
+     * letters and the plain text is padded with X to the length of the cipher text, as
+     * Solitaire pads messages before encrypting them.
+     * @param plainText     known plain text of the message
+     * @param cipherText    cipher text the passphrase's deck produced from the plain text
+     * @param pool          pool the search runs on
+     */
+    public PassphraseSearch(String plainText, String cipherText, ForkJoinPool pool) {
+        String plainLetters = Deck.lettersOf(plainText);
+        String cipherLetters = Deck.lettersOf(cipherText);
+        if (plainLetters.length() == 0 || plainLetters.length() > cipherLetters.length()) {
+            throw new IllegalArgumentException("Cipher text must have at least as many letters as the plain text");
+        }
+        this.keystream = new byte[cipherLetters.length()];
+        for (int i = 0; i < keystream.length; i++) {
+            char plainLetter = i < plainLetters.length() ? plainLetters.charAt(i) : 'X';
+            keystream[i] = (byte) ((cipherLetters.charAt(i) - plainLetter + ALPHABET_SIZE) % ALPHABET_SIZE);
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Tries every candidate passphrase
+     * @param candidates    passphrases to try
+     * @return              the candidates whose deck enciphers the plain text to the cipher text, in list order
+     */
+    public List<String> search(List<String> candidates) {
+        return pool.invoke(new SearchTask(candidates, 0, candidates.size()));
+    }
+
+    /**
+     * Checks whether the keystream of a deck matches the message's keystream
+     * @param deck    deck keyed with a candidate passphrase
+     * @return        true if every keystream value matches
+     */
+    private boolean matches(Deck deck) {
+        for (byte value : keystream) {
+            if ((deck.nextOrdinal() + 1) % ALPHABET_SIZE != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Command line entry point. Searches a word list, one candidate per line, and prints
+     * each passphrase found and the number of candidates tried per second.
+     * @param args    plain text, cipher text and word list file
+     * @throws IOException  If the word list cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: PassphraseSearch <plain text> <cipher text> <word list file>");
+            System.exit(1);
+        }
+        List<String> candidates = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[2]), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                candidates.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        long start = System.nanoTime();
+        List<String> passphrases = new PassphraseSearch(args[0], args[1]).search(candidates);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (String passphrase : passphrases) {
+            System.out.println("Found passphrase: " + passphrase);
+        }
+        System.out.printf("Tried %d candidates in %.1f seconds, %.0f candidates per second%n",
+                candidates.size(), seconds, candidates.size() / seconds);
+    }
+
+    /**
+     * Tries a range of the candidates, splitting it in half until it is small enough
+     */
+    private class SearchTask extends RecursiveTask<List<String>> {
+        /**
+         * Version of the serialized form inherited from ForkJoinTask
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Passphrases to try
+         */
+        private final List<String> candidates;
+
+        /**
+         * Position of the first candidate in the range
+         */
+        private final int from;
+
+        /**
+         * Position just after the last candidate in the range
+         */
+        private final int to;
+
+        /**
+         * Creates a task for a range of candidates
+         * @param candidates    passphrases to try
+         * @param from          position of the first candidate in the range
+         * @param to            position just after the last candidate in the range
+         */
+        SearchTask(List<String> candidates, int from, int to) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<String> compute() {
+            if (to - from > CANDIDATES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                SearchTask second = new SearchTask(candidates, middle, to);
+                second.fork();
+                List<String> found = new SearchTask(candidates, from, middle).compute();
+                found.addAll(second.join());
+                return found;
+            }
+            List<String> found = new ArrayList<String>();
+            Deck deck = new Deck();
+            for (int i = from; i < to; i++) {
+                deck.keyWithPassphrase(candidates.get(i));
+                if (matches(deck)) {
+                    found.add(candidates.get(i));
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -17,13 +17,21 @@ public enum Rank {
     KING(13),
     JOKER(0);
 
-    private Integer value;
+    private final int value;
 
-    Rank(Integer i) {
+    Rank(int i) {
       this.value = i;
     }
 
     public Integer getValue() {
         return value;
     }
+
+    /**
+     * Value without boxing
+     * @return    the value
+     */
+    public int value() {
+        return value;
+    }
 }
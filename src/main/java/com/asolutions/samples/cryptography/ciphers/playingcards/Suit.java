@@ -9,9 +9,9 @@ public enum Suit {
     JOKER_A(53),
     JOKER_B(53);
 
-    private Integer value;
+    private final int value;
 
-    Suit(Integer i) {
+    Suit(int i) {
         this.value = i;
     }
 
@@ -19,4 +19,12 @@ public enum Suit {
         return value;
     }
 
+    /**
+     * Value without boxing
+     * @return    the value
+     */
+    public int value() {
+        return value;
+    }
+
 }
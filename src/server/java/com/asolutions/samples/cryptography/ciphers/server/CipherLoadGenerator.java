@@ -0,0 +1,189 @@
+package com.asolutions.samples.cryptography.ciphers.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends many encrypt requests to a {@link CipherServer} at once and measures throughput
+ * and latency, to check that requests do not queue behind each other.
+ * @author Brian Haggard
+ */
+public class CipherLoadGenerator {
+    /**
+     * Character set of request and response bodies
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Address of the encrypt endpoint including the key id
+     */
+    private final URL encryptUrl;
+
+    /**
+     * Number of requests sent at once
+     */
+    private final int concurrency;
+
+    /**
+     * Latency of each request, in nanoseconds
+     */
+    private long[] latencies = new long[0];
+
+    /**
+     * Number of requests that did not get a 200 response
+     */
+    private int failures;
+
+    /**
+     * Seconds taken to send all requests
+     */
+    private double seconds;
+
+    /**
+     * Creates a load generator
+     * @param serverUrl      base address of the server, such as http://localhost:8080
+     * @param keyId          key id to encrypt with
+     * @param concurrency    number of requests sent at once
+     * @throws IOException  If the address is malformed
+     */
+    public CipherLoadGenerator(String serverUrl, long keyId, int concurrency) throws IOException {
+        this.encryptUrl = URI.create(serverUrl + "/encrypt?key=" + keyId).toURL();
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sends requests, keeping the given number in flight until all have been sent
+     * @param requests    number of requests to send
+     * @param message     message each request encrypts
+     */
+    public void run(final int requests, String message) {
+        final byte[] body = message.getBytes(UTF_8);
+        final long[] requestLatencies = new long[requests];
+        final AtomicInteger nextRequest = new AtomicInteger();
+        final AtomicInteger failedRequests = new AtomicInteger();
+        List<Callable<Void>> clients = new ArrayList<Callable<Void>>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.add(new Callable<Void>() {
+                public Void call() throws IOException {
+                    int request;
+                    while ((request = nextRequest.getAndIncrement()) < requests) {
+                        long start = System.nanoTime();
+                        if (!send(body)) {
+                            failedRequests.incrementAndGet();
+                        }
+                        requestLatencies[request] = System.nanoTime() - start;
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        try {
+            for (Future<Void> future : executor.invokeAll(clients)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending requests", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to send requests", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(requestLatencies);
+        latencies = requestLatencies;
+        failures = failedRequests.get();
+    }
+
+    /**
+     * Number of requests that did not get a 200 response in the last run
+     * @return    the number of failures
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Requests per second in the last run
+     * @return    the throughput
+     */
+    public double getThroughput() {
+        return latencies.length / seconds;
+    }
+
+    /**
+     * Latency below which the given fraction of requests in the last run completed
+     * @param fraction    fraction of requests, such as 0.99
+     * @return            the latency in milliseconds
+     */
+    public double getLatencyMillis(double fraction) {
+        int index = Math.min(latencies.length - 1, (int) (fraction * latencies.length));
+        return latencies[index] / 1e6;
+    }
+
+    /**
+     * Sends one encrypt request and reads the whole response
+     * @param body    request body
+     * @return        true if the server responded with 200
+     * @throws IOException  If the request cannot be sent
+     */
+    private boolean send(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) encryptUrl.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        OutputStream out = connection.getOutputStream();
+        out.write(body);
+        out.close();
+        int status = connection.getResponseCode();
+        InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+            in.close();
+        }
+        return status == 200;
+    }
+
+    /**
+     * Command line entry point. Runs a load test against a running server and prints the results.
+     * @param args    server address, key id, number of requests, concurrency and message length
+     * @throws IOException  If the server address is malformed
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("Usage: CipherLoadGenerator <server url> <key id> <requests> <concurrency> <message length>");
+            System.exit(1);
+        }
+        StringBuilder message = new StringBuilder();
+        for (int i = Integer.parseInt(args[4]); i > 0; i--) {
+            message.append((char) ('A' + i % 26));
+        }
+        CipherLoadGenerator loadGenerator = new CipherLoadGenerator(args[0], Long.parseLong(args[1]), Integer.parseInt(args[3]));
+        loadGenerator.run(Integer.parseInt(args[2]), message.toString());
+        System.out.printf("%.0f requests per second, %d failures%n", loadGenerator.getThroughput(), loadGenerator.getFailures());
+        System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                loadGenerator.getLatencyMillis(0.5), loadGenerator.getLatencyMillis(0.99), loadGenerator.getLatencyMillis(1.0));
+    }
+}
@@ -0,0 +1,310 @@
+package com.asolutions.samples.cryptography.ciphers.server;
+
+import com.asolutions.samples.cryptography.ciphers.Solitaire;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.Ring;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.VectorRings;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.DeckKeyStore;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP service that encrypts and decrypts messages with keys from a
+ * {@link DeckKeyStore}. Each request runs on its own thread, a virtual thread when the
+ * JVM has them, so requests never queue behind each other waiting for a pooled thread.
+ * Each request gets its own deck read from the key store, so requests never share deck state.
+ *
+ * Endpoints, each taking a POST with a UTF-8 body and a key id in the query string:
+ * <ul>
+ *     <li>/encrypt?key=id and /decrypt?key=id cipher the body as one message</li>
+ *     <li>/batch/encrypt?key=id and /batch/decrypt?key=id cipher each line of the body as a
+ *     separate message and return one line per message</li>
+ * </ul>
+ * @author Brian Haggard
+ */
+public class CipherServer {
+    /**
+     * Largest request body accepted, in bytes
+     */
+    public static final int MAXIMUM_BODY_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Number of keys a key store created by main holds unless the command line says otherwise
+     */
+    public static final long DEFAULT_STORE_CAPACITY = 65536;
+
+    /**
+     * Memory cap of the keystream cache shared by all requests, in bytes. Keys are looked up
+     * by id from a store that can hold many thousands, so the cache holds the hot keys only.
+     */
+    public static final int KEYSTREAM_CACHE_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Character set of request and response bodies
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Key store the key ids refer to
+     */
+    private final DeckKeyStore keys;
+
+    /**
+     * Keystreams shared by all requests, so a key's keystream is only generated once
+     */
+    private final KeystreamCache keystreamCache;
+
+    /**
+     * Ring used to decode characters based on a card
+     */
+    private final Ring decoderRing = VectorRings.decoder();
+
+    /**
+     * Ring used to encode characters based on a card
+     */
+    private final Ring encoderRing = VectorRings.encoder();
+
+    /**
+     * The underlying HTTP server
+     */
+    private final HttpServer server;
+
+    /**
+     * Executor each request runs on
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server bound to the given address. It does not accept requests until started.
+     * @param keys       key store the key ids refer to
+     * @param address    address to listen on, port 0 for any free port
+     * @throws IOException  If the address cannot be bound
+     */
+    public CipherServer(DeckKeyStore keys, InetSocketAddress address) throws IOException {
+        this(keys, address, KEYSTREAM_CACHE_BYTES);
+    }
+
+    /**
+     * Creates a server with a keystream cache of the given size
+     * @param keys                   key store the key ids refer to
+     * @param address                address to listen on, port 0 for any free port
+     * @param keystreamCacheBytes    memory cap of the keystream cache shared by all requests
+     * @throws IOException  If the address cannot be bound
+     */
+    CipherServer(DeckKeyStore keys, InetSocketAddress address, int keystreamCacheBytes) throws IOException {
+        this.keys = keys;
+        this.keystreamCache = new KeystreamCache(keystreamCacheBytes);
+        this.server = HttpServer.create(address, 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/encrypt", new CipherHandler(true, false));
+        server.createContext("/decrypt", new CipherHandler(false, false));
+        server.createContext("/batch/encrypt", new CipherHandler(true, true));
+        server.createContext("/batch/decrypt", new CipherHandler(false, true));
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for those in progress to finish
+     * @param delaySeconds    most seconds to wait for requests in progress
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Port the server is listening on
+     * @return    the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Keystream cache shared by all requests
+     * @return    the cache
+     */
+    KeystreamCache getKeystreamCache() {
+        return keystreamCache;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per request, falling back to an
+     * unbounded pool of platform threads on JVMs without virtual threads
+     * @return    the request executor
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Command line entry point. Serves the keys in a key store until the process is stopped.
+     * The capacity is only used if the key store file does not exist yet.
+     * @param args    key store file, port and optionally the key store capacity
+     * @throws IOException  If the key store cannot be opened or the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: CipherServer <key store file> <port> [<key store capacity>]");
+            System.exit(1);
+        }
+        long capacity = args.length == 3 ? Long.parseLong(args[2]) : DEFAULT_STORE_CAPACITY;
+        CipherServer server = new CipherServer(new DeckKeyStore(new File(args[0]), capacity), new InetSocketAddress("localhost", Integer.parseInt(args[1])));
+        server.start();
+        System.out.println("Listening on port " + server.getPort());
+    }
+
+    /**
+     * Reads a request body
+     * @param exchange    the request
+     * @return            the body, or null if it is larger than the maximum body size
+     * @throws IOException  If the body cannot be read
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > MAXIMUM_BODY_SIZE) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    /**
+     * Sends a response and closes the exchange
+     * @param exchange    the request
+     * @param status      HTTP status code
+     * @param body        response body
+     * @throws IOException  If the response cannot be written
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Finds the key id in a request's query string
+     * @param exchange    the request
+     * @return            the key id, or null if there is none or it is not a number
+     */
+    private static Long keyIdOf(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("key=")) {
+                try {
+                    return Long.valueOf(parameter.substring("key=".length()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Handles one of the cipher endpoints
+     */
+    private class CipherHandler implements HttpHandler {
+        /**
+         * True to encrypt, false to decrypt
+         */
+        private final boolean encrypt;
+
+        /**
+         * True if each line of the body is a separate message
+         */
+        private final boolean batch;
+
+        /**
+         * Creates a handler
+         * @param encrypt    true to encrypt, false to decrypt
+         * @param batch      true if each line of the body is a separate message
+         */
+        CipherHandler(boolean encrypt, boolean batch) {
+            this.encrypt = encrypt;
+            this.batch = batch;
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Use POST\n");
+                return;
+            }
+            Long keyId = keyIdOf(exchange);
+            if (keyId == null) {
+                respond(exchange, 400, "Missing or invalid key id\n");
+                return;
+            }
+            Deck deck = keys.get(keyId);
+            if (deck == null) {
+                respond(exchange, 404, "No key with id " + keyId + "\n");
+                return;
+            }
+            String body = readBody(exchange);
+            if (body == null) {
+                respond(exchange, 413, "Request body is larger than " + MAXIMUM_BODY_SIZE + " bytes\n");
+                return;
+            }
+            Solitaire solitaire = new Solitaire(deck, decoderRing, encoderRing, keystreamCache);
+            if (!batch) {
+                respond(exchange, 200, encrypt ? solitaire.encrypt(body) : solitaire.decrypt(body));
+                return;
+            }
+            List<String> messages = new ArrayList<String>();
+            int start = 0;
+            while (start < body.length()) {
+                int end = body.indexOf('\n', start);
+                if (end < 0) {
+                    end = body.length();
+                }
+                messages.add(body.substring(start, end > start && body.charAt(end - 1) == '\r' ? end - 1 : end));
+                start = end + 1;
+            }
+            StringBuilder response = new StringBuilder(body.length() * 2);
+            for (String message : messages) {
+                response.append(encrypt ? solitaire.encrypt(message) : solitaire.decrypt(message)).append('\n');
+            }
+            respond(exchange, 200, response.toString());
+        }
+    }
+}
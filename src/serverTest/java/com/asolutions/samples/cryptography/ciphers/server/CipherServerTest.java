@@ -0,0 +1,132 @@
+package com.asolutions.samples.cryptography.ciphers.server;
+
+import com.asolutions.samples.cryptography.ciphers.Solitaire;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.DeckKeyStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+
+public class CipherServerTest {
+
+    private File storeFile;
+    private DeckKeyStore keys;
+    private Deck deck;
+    private Solitaire solitaire;
+    private CipherServer testObject;
+    private String serverUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        storeFile = File.createTempFile("server", ".keys");
+        keys = new DeckKeyStore(storeFile, 20);
+        deck = new Deck();
+        deck.shuffle();
+        keys.put(7, deck);
+        solitaire = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing());
+        testObject = new CipherServer(keys, new InetSocketAddress("localhost", 0));
+        testObject.start();
+        serverUrl = "http://localhost:" + testObject.getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testObject.stop(0);
+        keys.close();
+        storeFile.delete();
+    }
+
+    @Test
+    public void testEncryptAndDecryptMatchSolitaire() throws Exception {
+        String message = "Meet me at the usual place at ten";
+
+        String encrypted = post("/encrypt?key=7", message, 200);
+
+        assertEquals(solitaire.encrypt(message), encrypted);
+        assertEquals(solitaire.decrypt(encrypted), post("/decrypt?key=7", encrypted, 200));
+    }
+
+    @Test
+    public void testBatchCiphersEachLineAsAMessage() throws Exception {
+        String encrypted = post("/batch/encrypt?key=7", "First message\r\nSecond\nthird one", 200);
+
+        assertEquals(solitaire.encrypt("First message") + "\n" + solitaire.encrypt("Second") + "\n"
+                + solitaire.encrypt("third one") + "\n", encrypted);
+        String[] lines = encrypted.split("\n");
+        assertEquals(solitaire.decrypt(lines[1]) + "\n", post("/batch/decrypt?key=7", lines[1], 200));
+    }
+
+    @Test
+    public void testBadRequestsAreRejected() throws Exception {
+        post("/encrypt?key=8", "HELLO", 404);
+        post("/encrypt", "HELLO", 400);
+        post("/decrypt?key=seven", "HELLO", 400);
+    }
+
+    @Test
+    public void testConcurrentRequestsAllSucceed() throws Exception {
+        CipherLoadGenerator loadGenerator = new CipherLoadGenerator(serverUrl, 7, 16);
+
+        loadGenerator.run(400, "THE QUICK BROWN FOX JUMPS OVER THE LAZY DOG");
+
+        assertEquals(0, loadGenerator.getFailures());
+    }
+
+    @Test
+    public void testKeystreamCacheStaysWithinItsCap() throws Exception {
+        CipherServer server = new CipherServer(keys, new InetSocketAddress("localhost", 0), 2048);
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getPort();
+            for (long id = 100; id < 108; id++) {
+                Deck other = new Deck();
+                other.shuffle();
+                keys.put(id, other);
+                post(url, "/encrypt?key=" + id, "Short message " + id, 200);
+                assertTrue(server.getKeystreamCache().size() <= 2048);
+            }
+            assertTrue(server.getKeystreamCache().size() > 0);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private String post(String path, String body, int expectedStatus) throws Exception {
+        return post(serverUrl, path, body, expectedStatus);
+    }
+
+    private String post(String url, String path, String body, int expectedStatus) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url + path).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write(body.getBytes("UTF-8"));
+        out.close();
+        assertEquals(expectedStatus, connection.getResponseCode());
+        InputStream in = expectedStatus == 200 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (in != null) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+            in.close();
+        }
+        return response.toString("UTF-8");
+    }
+}
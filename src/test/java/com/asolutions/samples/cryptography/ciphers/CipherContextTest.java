@@ -0,0 +1,85 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+
+public class CipherContextTest {
+
+    private Deck sortedDeck;
+
+    @Before
+    public void setUp() throws Exception {
+        sortedDeck = new Deck();
+        sortedDeck.sort(true);
+    }
+
+    @Test
+    public void testContextsCipherTheSameAsSolitaire() throws Exception {
+        String message = "Code in Ruby, live longer!";
+        Solitaire stepped = new Solitaire(sortedDeck, new DecoderRing(), new EncoderRing());
+        Solitaire cached = new Solitaire(sortedDeck, new DecoderRing(), new EncoderRing(), new KeystreamCache());
+        String expected = stepped.encrypt(message);
+        char[] out = new char[40];
+
+        for (Solitaire solitaire : new Solitaire[] {stepped, cached}) {
+            CipherContext encryption = solitaire.newEncryptionContext();
+            CipherContext decryption = solitaire.newDecryptionContext();
+            for (int i = 0; i < 3; i++) {
+                int length = encryption.cipher(message, out, 1);
+                assertEquals(expected, new String(out, 1, length));
+                length = decryption.cipher(expected, out, 0);
+                assertEquals("CODEI NRUBY LIVEL ONGER", new String(out, 0, length));
+            }
+        }
+    }
+
+    @Test
+    public void testCipherIntoBuffers() throws Exception {
+        Solitaire solitaire = new Solitaire(sortedDeck, new DecoderRing(), new EncoderRing());
+        solitaire.setFormattingPolicy(new FormattingPolicy(4, 'Q', false));
+        CipherContext testObject = solitaire.newEncryptionContext();
+        String expected = solitaire.encrypt("Meet me at ten.");
+        CharBuffer message = CharBuffer.wrap("Meet me at ten.");
+
+        CharBuffer heapBuffer = CharBuffer.allocate(20);
+        assertEquals(expected.length(), testObject.cipher(message, heapBuffer));
+        heapBuffer.flip();
+        assertEquals(expected, heapBuffer.toString());
+
+        CharBuffer directBuffer = ByteBuffer.allocateDirect(40).asCharBuffer();
+        assertEquals(expected.length(), testObject.cipher(message, directBuffer));
+        directBuffer.flip();
+        assertEquals(expected, directBuffer.toString());
+
+        for (ByteBuffer bytes : new ByteBuffer[] {ByteBuffer.allocate(20), ByteBuffer.allocateDirect(20)}) {
+            assertEquals(expected.length(), testObject.cipher(message, bytes));
+            bytes.flip();
+            byte[] ascii = new byte[bytes.remaining()];
+            bytes.get(ascii);
+            assertEquals(expected, new String(ascii, "US-ASCII"));
+        }
+        assertEquals(0, message.position());
+    }
+
+    @Test
+    public void testCipherIntoSmallBufferFails() throws Exception {
+        CipherContext testObject = new Solitaire(sortedDeck, new DecoderRing(), new EncoderRing()).newEncryptionContext();
+        try {
+            testObject.cipher("abcdef", ByteBuffer.allocate(10));
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+
+public class CipherSessionTest {
+
+    private Deck deck;
+    private Solitaire solitaire;
+
+    @Before
+    public void setUp() throws Exception {
+        deck = new Deck();
+        deck.shuffle();
+        solitaire = new Solitaire(deck, new DecoderRing(), new EncoderRing());
+    }
+
+    @Test
+    public void testChunksCipherTheSameAsTheWholeMessage() throws Exception {
+        String message = "Code in Ruby, live longer! Your cipher is working.";
+        String encrypted = solitaire.encrypt(message);
+
+        CipherSession encryption = solitaire.newEncryptionSession();
+        StringBuilder chunks = new StringBuilder();
+        for (int start = 0; start < message.length(); start += 7) {
+            chunks.append(encryption.update(message.substring(start, Math.min(message.length(), start + 7))));
+        }
+        chunks.append(encryption.finish());
+        assertEquals(encrypted, chunks.toString());
+        assertTrue(encryption.isFinished());
+
+        CipherSession decryption = solitaire.newDecryptionSession();
+        String decrypted = decryption.update(encrypted.substring(0, 13)) + decryption.update(encrypted.substring(13)) + decryption.finish();
+        assertEquals(solitaire.decrypt(encrypted), decrypted);
+    }
+
+    @Test
+    public void testResumedSessionCarriesOnFromItsSnapshot() throws Exception {
+        String message = "Meet me at the old mill at ten, bring the documents.";
+        String encrypted = solitaire.encrypt(message);
+
+        CipherSession session = solitaire.newEncryptionSession();
+        String first = session.update(message.substring(0, 18));
+        byte[] snapshot = session.snapshot();
+        session.update("these letters are lost in the crash");
+
+        Solitaire restarted = new Solitaire(Deck.fromKey(deck.toKey()), new DecoderRing(), new EncoderRing());
+        CipherSession resumed = restarted.resumeSession(snapshot);
+        assertEquals(14, resumed.getPosition());
+        String rest = resumed.update(message.substring(18)) + resumed.finish();
+        assertEquals(encrypted, first + rest);
+
+        try {
+            resumed.update("more");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void testResumingWithADifferentKeyFails() throws Exception {
+        byte[] snapshot = solitaire.newEncryptionSession().snapshot();
+        Deck otherDeck = new Deck();
+        otherDeck.shuffle();
+
+        try {
+            new Solitaire(otherDeck, new DecoderRing(), new EncoderRing()).resumeSession(snapshot);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.*;
+
+
+public class ConcurrentSolitaireTest {
+
+    private Deck deck;
+    private Solitaire solitaire;
+
+    @Before
+    public void setUp() throws Exception {
+        deck = new Deck();
+        deck.shuffle();
+        solitaire = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing());
+    }
+
+    @Test
+    public void testKeyIsNotChangedByTheDeckItWasTakenFrom() throws Exception {
+
+        SolitaireKey key = new SolitaireKey(deck);
+        Deck keyDeck = key.newDeck();
+
+        deck.shuffle();
+
+        assertEquals(keyDeck, key.newDeck());
+        assertNotSame(keyDeck, key.newDeck());
+        assertFalse(key.equals(new SolitaireKey(deck)));
+        assertEquals(new SolitaireKey(keyDeck), key);
+        assertEquals(new SolitaireKey(keyDeck).hashCode(), key.hashCode());
+
+    }
+
+    @Test
+    public void testThreadsEncryptingAtOnceGetTheSameResultsAsOneThread() throws Exception {
+
+        assertConcurrentResultsMatch(new ConcurrentSolitaire(new SolitaireKey(deck)));
+        assertConcurrentResultsMatch(new ConcurrentSolitaire(new SolitaireKey(deck), new DecoderRing(), new EncoderRing(), new KeystreamCache()));
+
+    }
+
+    private void assertConcurrentResultsMatch(final ConcurrentSolitaire testObject) throws Exception {
+        Random random = new Random();
+        final List<String> messages = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder("A");
+            for (int j = random.nextInt(200); j > 0; j--) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            messages.add(sb.toString());
+        }
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    for (String message : messages) {
+                        String encrypted = testObject.encrypt(message);
+                        if (!encrypted.equals(solitaireEncrypt(message))
+                                || !testObject.decrypt(encrypted).equals(solitaireDecrypt(encrypted))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private synchronized String solitaireEncrypt(String message) {
+        return solitaire.encrypt(message);
+    }
+
+    private synchronized String solitaireDecrypt(String message) {
+        return solitaire.decrypt(message);
+    }
+}
@@ -0,0 +1,64 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+
+public class FormattingPolicyTest {
+
+    @Test
+    public void testDefaultPolicyGroupsInFivesPaddedWithX() throws Exception {
+        FormattingPolicy testObject = FormattingPolicy.DEFAULT;
+
+        assertEquals("THISI SAMES SAGEX", testObject.format("This is a message!"));
+        assertEquals("AAAAA", testObject.format("aaaaa"));
+        assertEquals("AAAAA AXXXX", testObject.format("aaaaaa"));
+        assertEquals("", testObject.format("1234 !?"));
+        assertEquals("", testObject.format(""));
+    }
+
+    @Test
+    public void testCustomPolicies() throws Exception {
+        assertEquals("THI SIS AME SSA GEQ", new FormattingPolicy(3, 'Q', true).format("This is a message!"));
+        assertEquals("THISISAMESSAGEX", new FormattingPolicy(5, 'X', false).format("This is a message!"));
+        assertEquals("THISISAMESSAGE", new FormattingPolicy(1, 'X', false).format("This is a message!"));
+        assertEquals("T H I S", new FormattingPolicy(1, 'X', true).format("this"));
+    }
+
+    @Test
+    public void testFormatIntoBuffers() throws Exception {
+        String message = "Meet me at ten.";
+        String expected = "MEETM EATTE N" + "XXXX";
+        char[] array = new char[20];
+
+        int length = FormattingPolicy.DEFAULT.format(message, array, 2);
+
+        assertEquals(expected, new String(array, 2, length));
+
+        CharBuffer heapBuffer = CharBuffer.allocate(30);
+        heapBuffer.put("ab");
+        assertEquals(expected.length(), FormattingPolicy.DEFAULT.format(CharBuffer.wrap(message), heapBuffer));
+        heapBuffer.flip();
+        assertEquals("ab" + expected, heapBuffer.toString());
+
+        CharBuffer directBuffer = ByteBuffer.allocateDirect(60).asCharBuffer();
+        assertEquals(expected.length(), FormattingPolicy.DEFAULT.format(message, directBuffer));
+        directBuffer.flip();
+        assertEquals(expected, directBuffer.toString());
+    }
+
+    @Test
+    public void testFormatIntoSmallBufferFails() throws Exception {
+        try {
+            FormattingPolicy.DEFAULT.format("abcdef", CharBuffer.allocate(5));
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.asolutions.samples.cryptography.ciphers;
+
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+
+
+public class MappedFileCipherTest {
+
+    private Random random;
+    private Solitaire solitaire;
+    private MappedFileCipher testObject;
+    private File plainTextFile;
+    private File encryptedFile;
+    private File decryptedFile;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random();
+        Deck deck = new Deck();
+        deck.shuffle();
+        solitaire = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing());
+        testObject = new MappedFileCipher(deck);
+        plainTextFile = File.createTempFile("plain", ".txt");
+        encryptedFile = File.createTempFile("encrypted", ".txt");
+        decryptedFile = File.createTempFile("decrypted", ".txt");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        plainTextFile.delete();
+        encryptedFile.delete();
+        decryptedFile.delete();
+    }
+
+    @Test
+    public void testEncryptedFileMatchesStringEncryption() throws Exception {
+
+        for (int length : new int[]{1, 4, 5, 6, 1000, 50000}) {
+            String message = buildRandomMessage(length);
+            write(plainTextFile, message);
+
+            long encryptedLength = testObject.encrypt(plainTextFile, encryptedFile);
+            String encrypted = read(encryptedFile);
+            assertEquals(solitaire.encrypt(message), encrypted);
+            assertEquals(encrypted.length(), encryptedLength);
+
+            testObject.decrypt(encryptedFile, decryptedFile);
+            assertEquals(solitaire.decrypt(encrypted), read(decryptedFile));
+        }
+
+    }
+
+    @Test
+    public void testPipelinedFileMatchesStringEncryption() throws Exception {
+
+        testObject.setPipelined(true);
+        for (int length : new int[]{1, 6, 50000}) {
+            String message = buildRandomMessage(length);
+            write(plainTextFile, message);
+
+            testObject.encrypt(plainTextFile, encryptedFile);
+            String encrypted = read(encryptedFile);
+            assertEquals(solitaire.encrypt(message), encrypted);
+
+            testObject.decrypt(encryptedFile, decryptedFile);
+            assertEquals(solitaire.decrypt(encrypted), read(decryptedFile));
+        }
+
+    }
+
+    @Test
+    public void testFormattingPolicyAppliesToFiles() throws Exception {
+
+        FormattingPolicy formattingPolicy = new FormattingPolicy(4, 'Q', false);
+        solitaire.setFormattingPolicy(formattingPolicy);
+        testObject.setFormattingPolicy(formattingPolicy);
+        for (int length : new int[]{1, 4, 7, 50000}) {
+            String message = buildRandomMessage(length);
+            write(plainTextFile, message);
+
+            long encryptedLength = testObject.encrypt(plainTextFile, encryptedFile);
+            String encrypted = read(encryptedFile);
+            assertEquals(solitaire.encrypt(message), encrypted);
+            assertEquals(encrypted.length(), encryptedLength);
+
+            testObject.decrypt(encryptedFile, decryptedFile);
+            assertEquals(solitaire.decrypt(encrypted), read(decryptedFile));
+        }
+
+    }
+
+    @Test
+    public void testFileWithNoLettersProducesEmptyFile() throws Exception {
+
+        write(plainTextFile, buildRandomMessage(1000));
+        testObject.encrypt(plainTextFile, encryptedFile);
+        write(plainTextFile, "1234 !?");
+
+        assertEquals(0, testObject.encrypt(plainTextFile, encryptedFile));
+        assertEquals(0, encryptedFile.length());
+
+    }
+
+    private String buildRandomMessage(int length) {
+        StringBuilder sb = new StringBuilder("Z");
+        String characters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789.,\n";
+        while (sb.length() < length) {
+            sb.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return sb.toString();
+    }
+
+    private void write(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private String read(File file) throws IOException {
+        byte[] contents = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < contents.length) {
+                read += in.read(contents, read, contents.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(contents, "US-ASCII");
+    }
+}
@@ -3,10 +3,22 @@ package com.asolutions.samples.cryptography.ciphers;
 import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
 import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
 import com.asolutions.samples.cryptography.ciphers.playingcards.Deck;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamCache;
+import com.asolutions.samples.cryptography.ciphers.playingcards.KeystreamPad;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static junit.framework.Assert.*;
 
@@ -45,6 +57,68 @@ public class SolitaireAcceptanceTest {
 
     }
 
+    @Test
+    public void testCachedKeystreamEncryptsTheSameAsSteppingTheDeck() throws Exception {
+
+        Deck deck = new Deck();
+        deck.shuffle();
+        Solitaire cachedSolitaire = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing(), new KeystreamCache());
+        Solitaire steppedSolitaire = new Solitaire(deck, new DecoderRing(), new EncoderRing());
+
+        for (int i = 0; i < 100; i++) {
+            String message = buildRandomMessage();
+            String encrypted = steppedSolitaire.encrypt(message);
+            assertEquals(encrypted, cachedSolitaire.encrypt(message));
+            assertEquals(steppedSolitaire.decrypt(encrypted), cachedSolitaire.decrypt(encrypted));
+        }
+
+    }
+
+    @Test
+    public void testStreamingMatchesStringEncryption() throws Exception {
+
+        for (int i = 0; i < 100; i++) {
+            String message = buildRandomMessage() + " some punctuation, and lower case!";
+            String encrypted = testObject.encrypt(message);
+
+            StringWriter encryptedWriter = new StringWriter();
+            testObject.encrypt(new StringReader(message), encryptedWriter);
+            assertEquals(encrypted, encryptedWriter.toString());
+
+            ByteArrayOutputStream encryptedStream = new ByteArrayOutputStream();
+            testObject.encrypt(new ByteArrayInputStream(message.getBytes("UTF-8")), encryptedStream);
+            assertEquals(encrypted, encryptedStream.toString("US-ASCII"));
+
+            StringWriter decryptedWriter = new StringWriter();
+            testObject.decrypt(new StringReader(encrypted), decryptedWriter);
+            assertEquals(testObject.decrypt(encrypted), decryptedWriter.toString());
+        }
+
+    }
+
+    @Test
+    public void testBatchEncryptionMatchesEncryptingEachMessageInOrder() throws Exception {
+
+        List<String> messages = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add(buildRandomMessage());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            List<String> encrypted = testObject.encryptAll(messages);
+            assertEquals(encrypted, testObject.encryptAll(messages, executor));
+            List<String> decrypted = testObject.decryptAll(encrypted, executor);
+            for (int i = 0; i < messages.size(); i++) {
+                assertEquals(testObject.encrypt(messages.get(i)), encrypted.get(i));
+                assertEquals(testObject.formatMessage(messages.get(i)), decrypted.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
     @Test
     public void testShuffledDeckEncryptsDifferentlyThanSortedDeck() throws Exception {
 
@@ -85,6 +159,57 @@ public class SolitaireAcceptanceTest {
 
     }
 
+    @Test
+    public void testFormattingPolicyAppliesToEveryPath() throws Exception {
+        Deck deck = new Deck();
+        deck.shuffle();
+        FormattingPolicy policy = new FormattingPolicy(4, 'Q', true);
+        Solitaire stepped = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing());
+        Solitaire cached = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing(), new KeystreamCache());
+        stepped.setFormattingPolicy(policy);
+        cached.setFormattingPolicy(policy);
+        String message = "Attack at dawn, bring snacks";
+
+        String encrypted = stepped.encrypt(message);
+        StringWriter streamed = new StringWriter();
+        cached.encrypt(new StringReader(message), streamed);
+
+        assertEquals(29, encrypted.length());
+        assertEquals(encrypted, cached.encrypt(message));
+        assertEquals(encrypted, streamed.toString());
+        assertEquals(Collections.singletonList(encrypted), cached.encryptAll(Collections.singletonList(message)));
+        assertEquals("ATTA CKAT DAWN BRIN GSNA CKSQ", cached.decrypt(encrypted));
+        assertEquals("", cached.encrypt("1234"));
+    }
+
+    @Test
+    public void testKeystreamPadEncryptsTheSameAsSteppingTheDeck() throws Exception {
+        Deck deck = new Deck();
+        deck.shuffle();
+        Solitaire stepped = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing());
+        Solitaire padded = new Solitaire(deck.copy(), new DecoderRing(), new EncoderRing(), new KeystreamCache());
+        File padFile = File.createTempFile("keystream", ".pad");
+        KeystreamPad pad = null;
+        try {
+            KeystreamPad.create(deck, 12, padFile);
+            pad = new KeystreamPad(padFile, deck);
+            padded.setKeystreamPad(pad);
+
+            for (String message : new String[] {"short", "a message longer than the twelve values in the pad"}) {
+                String encrypted = stepped.encrypt(message);
+                assertEquals(encrypted, padded.encrypt(message));
+                assertEquals(stepped.decrypt(encrypted), padded.decrypt(encrypted));
+                char[] out = new char[80];
+                assertEquals(encrypted, new String(out, 0, padded.newEncryptionContext().cipher(message, out, 0)));
+            }
+        } finally {
+            if (pad != null) {
+                pad.close();
+            }
+            padFile.delete();
+        }
+    }
+
     private void testCommunication(Solitaire testObjectA, Solitaire testObjectB) {
         String expected = testObjectA.formatMessage(buildRandomMessage());
         String encrypted = testObjectA.encrypt(expected);
@@ -34,4 +34,34 @@ public class EncoderRingTest {
         assertEquals((Character)DecoderRing.alphabet.charAt(25), testObject.cipher('A', mockCard));
 
     }
+
+    @Test
+    public void testPrimitiveCipherCoversEveryLetterAndCardValue() throws Exception {
+
+        for (int letter = 0; letter < 26; letter++) {
+            for (int keyValue = 1; keyValue <= 53; keyValue++) {
+                char expected = EncoderRing.alphabet.charAt((letter + keyValue) % 26);
+                assertEquals(expected, testObject.cipher('A' + letter, keyValue));
+            }
+        }
+
+    }
+
+    @Test
+    public void testBulkCipherMatchesPrimitiveCipher() throws Exception {
+
+        char[] in = "SOLITAIREBULKCIPHER".toCharArray();
+        byte[] keystream = new byte[in.length];
+        for (int i = 0; i < keystream.length; i++) {
+            keystream[i] = (byte) (i * 7 % 52 + 1);
+        }
+        char[] out = new char[in.length];
+
+        testObject.cipher(in, keystream, out);
+
+        for (int i = 0; i < in.length; i++) {
+            assertEquals(testObject.cipher(in[i], keystream[i]), out[i]);
+        }
+
+    }
 }
@@ -0,0 +1,48 @@
+package com.asolutions.samples.cryptography.ciphers.crackerjackprizes;
+
+import com.asolutions.samples.cryptography.ciphers.playingcards.Card;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+
+public class RingTest {
+
+    private Ring testObject;
+
+    @Before
+    public void setUp() throws Exception {
+        testObject = new Ring() {
+            @Override
+            public Character cipher(Character character, Card card) {
+                return Ring.alphabet.charAt((Ring.alphabet.indexOf(character) + card.getValue()) % 26);
+            }
+        };
+    }
+
+    @Test
+    public void testPrimitiveCipherAdaptsToCardCipher() throws Exception {
+
+        EncoderRing encoderRing = new EncoderRing();
+
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            for (int keyValue = 1; keyValue <= 53; keyValue++) {
+                assertEquals(encoderRing.cipher(letter, keyValue), testObject.cipher(letter, keyValue));
+            }
+        }
+
+    }
+
+    @Test
+    public void testBulkCipherAdaptsToCardCipher() throws Exception {
+
+        char[] in = "ADAPTER".toCharArray();
+        byte[] keystream = {1, 13, 14, 26, 27, 39, 52};
+        char[] out = new char[in.length];
+
+        testObject.cipher(in, keystream, out);
+
+        assertEquals("BQOPURR", new String(out));
+
+    }
+}
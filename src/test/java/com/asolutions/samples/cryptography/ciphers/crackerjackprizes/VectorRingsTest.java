@@ -0,0 +1,36 @@
+package com.asolutions.samples.cryptography.ciphers.crackerjackprizes;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+
+public class VectorRingsTest {
+
+    @Test
+    public void testVectorRingsMatchTableRings() throws Exception {
+
+        Random random = new Random();
+        char[] in = new char[1003];
+        byte[] keystream = new byte[in.length];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (char) ('A' + random.nextInt(26));
+            keystream[i] = (byte) (random.nextInt(53) + 1);
+        }
+
+        assertBulkCipherMatches(new EncoderRing(), VectorRings.encoder(), in, keystream);
+        assertBulkCipherMatches(new DecoderRing(), VectorRings.decoder(), in, keystream);
+
+    }
+
+    private void assertBulkCipherMatches(Ring expectedRing, Ring actualRing, char[] in, byte[] keystream) {
+        char[] expected = new char[in.length];
+        char[] actual = new char[in.length];
+        for (int offset = 0; offset < 40; offset++) {
+            expectedRing.cipher(in, offset, keystream, offset, expected, offset, in.length - offset);
+            actualRing.cipher(in, offset, keystream, offset, actual, offset, in.length - offset);
+            assertEquals(new String(expected), new String(actual));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.fail;
+
+
+public class CardTest {
+
+    /**
+     * The queen of hearts as serialized before cards were shared
+     */
+    private static final String LEGACY_QUEEN_OF_HEARTS =
+            "aced00057372003d636f6d2e61736f6c7574696f6e732e73616d706c65732e63727970746f6772617068792e63697068"
+            + "6572732e706c6179696e6763617264732e436172642097c9bebd61e08a0200034c000472616e6b74003f4c636f6d2f61"
+            + "736f6c7574696f6e732f73616d706c65732f63727970746f6772617068792f636970686572732f706c6179696e676361"
+            + "7264732f52616e6b3b4c00047375697474003f4c636f6d2f61736f6c7574696f6e732f73616d706c65732f6372797074"
+            + "6f6772617068792f636970686572732f706c6179696e6763617264732f537569743b4c000576616c75657400134c6a61"
+            + "76612f6c616e672f496e74656765723b78707e72003d636f6d2e61736f6c7574696f6e732e73616d706c65732e637279"
+            + "70746f6772617068792e636970686572732e706c6179696e6763617264732e52616e6b00000000000000001200007872"
+            + "000e6a6176612e6c616e672e456e756d00000000000000001200007870740005515545454e7e72003d636f6d2e61736f"
+            + "6c7574696f6e732e73616d706c65732e63727970746f6772617068792e636970686572732e706c6179696e6763617264"
+            + "732e5375697400000000000000001200007871007e000674000648454152545370";
+
+    @Test
+    public void testSharedCardsMatchConstructedCards() throws Exception {
+        int ordinal = 0;
+        for (Suit suit : new Suit[]{Suit.CLUBS, Suit.DIAMONDS, Suit.HEARTS, Suit.SPADES}) {
+            for (Rank rank : Rank.values()) {
+                if (rank != Rank.JOKER) {
+                    Card card = Card.valueOf(suit, rank);
+                    assertSame(card, Card.forOrdinal(ordinal));
+                    assertEquals(new Card(suit, rank), card);
+                    assertEquals(ordinal, card.ordinal());
+                    assertEquals(ordinal + 1, card.value());
+                    assertEquals((Integer) (ordinal + 1), card.getValue());
+                    ordinal++;
+                }
+            }
+        }
+        assertSame(Card.valueOf(Suit.JOKER_A, Rank.JOKER), Card.forOrdinal(52));
+        assertSame(Card.valueOf(Suit.JOKER_B, Rank.JOKER), Card.forOrdinal(53));
+        assertEquals(53, Card.forOrdinal(52).value());
+        assertEquals(53, Card.forOrdinal(53).value());
+    }
+
+    @Test
+    public void testDeserializedCardIsTheSharedCard() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(Card.valueOf(Suit.HEARTS, Rank.QUEEN));
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertSame(Card.valueOf(Suit.HEARTS, Rank.QUEEN), in.readObject());
+    }
+
+    @Test
+    public void testLegacySerializedCardResolvesToTheSharedCard() throws Exception {
+        byte[] legacy = new byte[LEGACY_QUEEN_OF_HEARTS.length() / 2];
+        for (int i = 0; i < legacy.length; i++) {
+            legacy[i] = (byte) Integer.parseInt(LEGACY_QUEEN_OF_HEARTS.substring(i * 2, i * 2 + 2), 16);
+        }
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(legacy));
+        assertSame(Card.valueOf(Suit.HEARTS, Rank.QUEEN), in.readObject());
+    }
+
+    @Test
+    public void testJokerRankNeedsJokerSuit() throws Exception {
+        try {
+            new Card(Suit.CLUBS, Rank.JOKER);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("There is no joker of clubs", e.getMessage());
+        }
+    }
+}
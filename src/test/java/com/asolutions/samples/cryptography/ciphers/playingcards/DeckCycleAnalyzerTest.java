@@ -0,0 +1,131 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+
+public class DeckCycleAnalyzerTest {
+
+    @Test
+    public void testAnalyzeGivesUpAtTheStepLimit() throws Exception {
+        Deck deck = new Deck();
+        deck.shuffle();
+
+        DeckCycle cycle = new DeckCycleAnalyzer(1000).analyze(deck);
+
+        assertFalse(cycle.isFound());
+        assertEquals(1000, cycle.getSteps());
+        assertEquals(deck, cycle.getKey());
+        assertEquals("no cycle within 1000 steps", cycle.toString());
+    }
+
+    @Test
+    public void testAnalyzeFindsTheCycleAndTail() throws Exception {
+        Deck deck = new LoopingDeck(20, 37);
+
+        DeckCycle cycle = new DeckCycleAnalyzer(1000).analyze(deck);
+
+        assertTrue(cycle.isFound());
+        assertEquals(37, cycle.getCycleLength());
+        assertEquals(20, cycle.getTailLength());
+        assertEquals(177, cycle.getSteps());
+        assertEquals("cycle length 37, tail length 20", cycle.toString());
+    }
+
+    @Test
+    public void testAnalyzeFindsACycleWithNoTail() throws Exception {
+        DeckCycle cycle = new DeckCycleAnalyzer(1000).analyze(new LoopingDeck(0, 37));
+
+        assertTrue(cycle.isFound());
+        assertEquals(37, cycle.getCycleLength());
+        assertEquals(0, cycle.getTailLength());
+        assertEquals(137, cycle.getSteps());
+    }
+
+    @Test
+    public void testAnalyzeAllKeepsTheOrderOfTheKeys() throws Exception {
+        List<Deck> keys = new ArrayList<Deck>();
+        for (int i = 0; i < 10; i++) {
+            Deck deck = new Deck();
+            deck.shuffle();
+            keys.add(deck);
+        }
+
+        List<DeckCycle> cycles = new DeckCycleAnalyzer(100).analyzeAll(keys);
+
+        assertEquals(keys.size(), cycles.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(keys.get(i), cycles.get(i).getKey());
+        }
+    }
+
+    @Test
+    public void testCopiedOrderMatchesUntilEitherDeckIsStepped() throws Exception {
+        Deck deck = new Deck();
+        deck.shuffle();
+        Deck other = deck.copy();
+        for (int i = 0; i < 10; i++) {
+            deck.getNextCard();
+        }
+        assertFalse(other.hasSameOrder(deck));
+
+        other.copyOrder(deck);
+        assertTrue(other.hasSameOrder(deck));
+        assertEquals(deck.getNextCard(), other.getNextCard());
+        assertTrue(other.hasSameOrder(deck));
+    }
+
+    /**
+     * A deck that steps normally until it has stepped tailLength + cycleLength times and
+     * then goes back to the order it had after tailLength steps, so its sequence of orders
+     * has a known tail and cycle.
+     */
+    private static class LoopingDeck extends Deck {
+        private final int tailLength;
+        private final int cycleLength;
+        private byte[] loopOrder;
+        private int steps;
+
+        LoopingDeck(int tailLength, int cycleLength) {
+            this.tailLength = tailLength;
+            this.cycleLength = cycleLength;
+        }
+
+        @Override
+        public Deck copy() {
+            return new LoopingDeck(tailLength, cycleLength);
+        }
+
+        @Override
+        public void restore() {
+            super.restore();
+            steps = 0;
+        }
+
+        @Override
+        void copyOrder(Deck deck) {
+            super.copyOrder(deck);
+            steps = ((LoopingDeck) deck).steps;
+            loopOrder = ((LoopingDeck) deck).loopOrder;
+        }
+
+        @Override
+        int nextOrdinal() {
+            if (steps == tailLength) {
+                loopOrder = saveState();
+            }
+            int ordinal = super.nextOrdinal();
+            if (++steps == tailLength + cycleLength) {
+                restoreState(loopOrder, tailLength);
+                steps = tailLength;
+            }
+            return ordinal;
+        }
+    }
+}
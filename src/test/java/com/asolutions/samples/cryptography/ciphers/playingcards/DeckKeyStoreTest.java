@@ -0,0 +1,137 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+
+public class DeckKeyStoreTest {
+
+    private File storeFile;
+
+    @Before
+    public void setUp() throws Exception {
+        storeFile = File.createTempFile("decks", ".keys");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        storeFile.delete();
+    }
+
+    @Test
+    public void testStoredDecksProduceTheSameKeystreamAfterReopening() throws Exception {
+        Map<Long, Deck> decks = new HashMap<Long, Deck>();
+        DeckKeyStore testObject = new DeckKeyStore(storeFile, 1000);
+        for (long id = 0; id < 1000; id++) {
+            Deck deck = new Deck();
+            deck.shuffle();
+            decks.put(id * 7919, deck);
+            assertTrue(testObject.put(id * 7919, deck));
+        }
+        testObject.close();
+
+        testObject = new DeckKeyStore(storeFile, 1);
+        assertEquals(1000, testObject.size());
+        for (Map.Entry<Long, Deck> entry : decks.entrySet()) {
+            Deck stored = testObject.get(entry.getKey());
+            assertEquals(entry.getValue(), stored);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(entry.getValue().getNextCard(), stored.getNextCard());
+            }
+        }
+        assertNull(testObject.get(1));
+        testObject.close();
+    }
+
+    @Test
+    public void testPutKeepsTheFirstKeyForAnId() throws Exception {
+        DeckKeyStore testObject = new DeckKeyStore(storeFile, 10);
+        Deck deck = new Deck();
+        Deck shuffled = new Deck();
+        shuffled.shuffle();
+
+        assertTrue(testObject.put(42, deck));
+        assertFalse(testObject.put(42, shuffled));
+
+        assertEquals(deck, testObject.get(42));
+        assertEquals(1, testObject.size());
+        testObject.close();
+    }
+
+    @Test
+    public void testPutFailsWhenStoreIsFull() throws Exception {
+        DeckKeyStore testObject = new DeckKeyStore(storeFile, 2);
+        for (long id = 0; id < 3; id++) {
+            testObject.put(id, new Deck());
+        }
+        try {
+            testObject.put(3, new Deck());
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Deck key store is full", e.getMessage());
+        }
+        testObject.close();
+    }
+
+    @Test
+    public void testGetSeesWholeKeysWhilePutsAreRunning() throws Exception {
+        final DeckKeyStore testObject = new DeckKeyStore(storeFile, 5000);
+        final Deck[] decks = new Deck[5000];
+        for (int i = 0; i < decks.length; i++) {
+            decks[i] = new Deck();
+            decks[i].shuffle();
+        }
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    for (int pass = 0; pass < 20; pass++) {
+                        for (int id = 0; id < decks.length; id++) {
+                            Deck stored = testObject.get(id);
+                            if (stored != null) {
+                                assertEquals(decks[id], stored);
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        reader.start();
+        for (int id = 0; id < decks.length; id++) {
+            assertTrue(testObject.put(id, decks[id]));
+        }
+        reader.join();
+        assertNull(failure.get());
+        assertEquals(decks.length, testObject.size());
+        testObject.close();
+    }
+
+    @Test
+    public void testOpeningAnotherFileFails() throws Exception {
+        FileOutputStream out = new FileOutputStream(storeFile);
+        out.write(new byte[128]);
+        out.close();
+        try {
+            new DeckKeyStore(storeFile, 10);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals(storeFile + " is not a deck key store", e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.asolutions.samples.cryptography.ciphers.playingcards;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -228,6 +229,43 @@ public class DeckTest {
 
     }
 
+    @Test
+    public void testGenerateKeystreamMatchesGetNextCard() throws Exception {
+
+        testObject.sort(true);
+        byte[] block = new byte[12];
+
+        assertEquals(10, testObject.generateKeystream(block, 1, 10));
+        assertEquals(0, block[0]);
+        assertEquals(4, block[1]);
+        assertEquals(49, block[2]);
+        assertEquals(24, block[4]);
+        assertEquals(33, block[10]);
+        assertEquals(0, block[11]);
+        assertEquals(10, testObject.getPosition());
+
+        testObject.shuffle();
+        Deck copy = testObject.copy();
+        copy.setCheckpointInterval(7);
+        ByteBuffer heapBuffer = ByteBuffer.allocate(500);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(500);
+        assertEquals(500, copy.generateKeystream(heapBuffer));
+        assertEquals(500, copy.generateKeystream(directBuffer));
+        assertFalse(heapBuffer.hasRemaining());
+        for (int i = 0; i < 1000; i++) {
+            int expected = testObject.getNextCard().value();
+            assertEquals(expected, i < 500 ? heapBuffer.get(i) : directBuffer.get(i - 500));
+        }
+        copy.seek(300);
+        assertEquals(heapBuffer.get(300), copy.getNextCard().value());
+
+        try {
+            testObject.generateKeystream(block, 5, 8);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+        }
+    }
+
     @Test
     public void testRestoreReturnsCardsListToOriginalState() throws Exception {
 
@@ -253,4 +291,163 @@ public class DeckTest {
         assertEquals(testObject.getCards(), result.getCards());
 
     }
+
+    @Test
+    public void testKeyRecreatesDeckWithTheSameOriginalOrder() throws Exception {
+
+        testObject.shuffle();
+        testObject.getNextCard();
+
+        byte[] key = testObject.toKey();
+        Deck result = Deck.fromKey(key);
+
+        assertEquals(54, key.length);
+        assertEquals(testObject.getOriginalOrderCards(), result.getCards());
+        assertEquals(testObject.getOriginalOrderCards(), result.getOriginalOrderCards());
+
+    }
+
+    @Test
+    public void testFromKeyRejectsKeysThatAreNotAnOrderingOfTheDeck() throws Exception {
+
+        byte[] duplicateCard = testObject.toKey();
+        duplicateCard[0] = duplicateCard[1];
+
+        for (byte[] key : new byte[][]{new byte[53], duplicateCard, new byte[]{54}}) {
+            try {
+                Deck.fromKey(key);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+
+    }
+
+    @Test
+    public void testSeekMovesToAnyPositionInTheKeystream() throws Exception {
+
+        testObject.shuffle();
+        int[] keystream = new int[2000];
+        for (int i = 0; i < keystream.length; i++) {
+            keystream[i] = testObject.getNextCard().getValue();
+        }
+
+        for (int checkpointInterval : new int[]{0, 1, 7, 100}) {
+            testObject.setCheckpointInterval(checkpointInterval);
+            testObject.restore();
+            for (int i = 0; i < 200; i++) {
+                int position = random.nextInt(keystream.length);
+                testObject.seek(position);
+                assertEquals(position, testObject.getPosition());
+                assertEquals((Integer) keystream[position], testObject.getNextCard().getValue());
+                assertEquals(position + 1, testObject.getPosition());
+            }
+        }
+
+    }
+
+    @Test
+    public void testRestoreMovesToTheStartOfTheKeystream() throws Exception {
+
+        testObject.setCheckpointInterval(10);
+        testObject.seek(55);
+
+        testObject.restore();
+
+        assertEquals(0, testObject.getPosition());
+        assertEquals((Integer) 4, testObject.getNextCard().getValue());
+
+    }
+
+    @Test
+    public void testCompactKeyRecreatesDeckWithTheSameOriginalOrder() throws Exception {
+
+        for (int i = 0; i < 1000; i++) {
+            testObject.shuffle();
+
+            byte[] compactKey = testObject.toCompactKey();
+            Deck result = Deck.fromCompactKey(compactKey);
+
+            assertEquals(Deck.COMPACT_KEY_SIZE, compactKey.length);
+            assertEquals(testObject.getOriginalOrderCards(), result.getOriginalOrderCards());
+        }
+
+    }
+
+    @Test
+    public void testCompactKeyOfSortedDecksIsTheSmallestAndLargestCode() throws Exception {
+
+        testObject.sort(true);
+        byte[] ascending = testObject.toCompactKey();
+        testObject.sort(false);
+        byte[] descending = testObject.toCompactKey();
+
+        for (byte digit : ascending) {
+            assertEquals(0, digit);
+        }
+        assertEquals(testObject.getOriginalOrderCards(), Deck.fromCompactKey(descending).getOriginalOrderCards());
+        byte[] tooLarge = descending.clone();
+        for (int i = tooLarge.length - 1; ++tooLarge[i] == 0; i--) {
+        }
+        try {
+            Deck.fromCompactKey(tooLarge);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+
+    }
+
+    @Test
+    public void testFingerprintFollowsTheCurrentOrder() throws Exception {
+
+        testObject.shuffle();
+        Deck copy = testObject.copy();
+        assertEquals(testObject.originalFingerprint(), testObject.fingerprint());
+        assertEquals(testObject.fingerprint(), copy.fingerprint());
+
+        for (int i = 0; i < 500; i++) {
+            testObject.getNextCard();
+            assertEquals(fingerprintOf(testObject.getCards()), testObject.fingerprint());
+        }
+        testObject.moveCardDown(testObject.getCards().get(53));
+        testObject.tripleCut(testObject.getCards().get(0), testObject.getCards().get(53));
+        testObject.tripleCut(testObject.getCards().get(10), testObject.getCards().get(20));
+        testObject.bottomValueCut();
+        assertEquals(fingerprintOf(testObject.getCards()), testObject.fingerprint());
+        assertFalse(testObject.fingerprint() == copy.fingerprint());
+        assertFalse(testObject.equals(copy));
+        assertEquals(copy.originalFingerprint(), testObject.originalFingerprint());
+
+        testObject.restore();
+        assertEquals(copy.fingerprint(), testObject.fingerprint());
+        assertEquals(copy, testObject);
+        assertEquals(copy.hashCode(), testObject.hashCode());
+
+    }
+
+    @Test
+    public void testPassphraseKeyingMatchesPublishedKeystream() throws Exception {
+
+        testObject.shuffle();
+        testObject.keyWithPassphrase("foo");
+
+        int[] expected = {8, 19, 7, 25, 20, 9, 8, 22, 32, 43, 5, 26, 17, 38, 48};
+        for (int value : expected) {
+            assertEquals((Integer) value, testObject.getNextCard().getValue());
+        }
+        testObject.restore();
+        assertEquals((Integer) 8, testObject.getNextCard().getValue());
+        assertEquals(testObject.originalFingerprint(), testObject.copy().fingerprint());
+
+    }
+
+    private long fingerprintOf(List<Card> cards) {
+        byte[] key = new byte[cards.size()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) cards.get(i).ordinal();
+        }
+        return Deck.fromKey(key).originalFingerprint();
+    }
 }
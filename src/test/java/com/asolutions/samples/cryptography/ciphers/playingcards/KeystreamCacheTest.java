@@ -0,0 +1,128 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+
+public class KeystreamCacheTest {
+
+    private Deck deck;
+    private KeystreamCache testObject;
+
+    @Before
+    public void setUp() throws Exception {
+        deck = new Deck();
+        deck.shuffle();
+        testObject = new KeystreamCache(1024);
+    }
+
+    @Test
+    public void testKeystreamMatchesCardsFromRestoredDeck() throws Exception {
+
+        Keystream keystream = testObject.getKeystream(deck, 500);
+
+        deck.restore();
+        assertTrue(keystream.length() >= 500);
+        for (int i = 0; i < 500; i++) {
+            Card card = deck.getNextCard();
+            assertEquals(card.getValue().intValue(), keystream.getValue(i));
+            assertEquals(card, keystream.getCard(i));
+        }
+
+    }
+
+    @Test
+    public void testDecksWithTheSameOriginalOrderShareAKeystream() throws Exception {
+
+        Keystream keystream = testObject.getKeystream(deck, 10);
+
+        assertSame(keystream, testObject.getKeystream(deck.copy(), 100));
+        assertTrue(keystream.length() >= 100);
+
+    }
+
+    @Test
+    public void testShuffledDeckGetsADifferentKeystream() throws Exception {
+
+        Keystream keystream = testObject.getKeystream(deck, 10);
+
+        deck.shuffle();
+
+        assertNotSame(keystream, testObject.getKeystream(deck, 10));
+
+    }
+
+    @Test
+    public void testLeastRecentlyUsedKeystreamsAreEvictedPastTheMemoryCap() throws Exception {
+
+        Keystream keystream = testObject.getKeystream(deck, 10);
+        for (int i = 0; i < 100; i++) {
+            Deck otherDeck = new Deck();
+            otherDeck.shuffle();
+            testObject.getKeystream(otherDeck, 100);
+            assertTrue(testObject.size() <= 1024);
+        }
+
+        assertNotSame(keystream, testObject.getKeystream(deck, 10));
+
+    }
+
+    @Test
+    public void testManyShortKeystreamsStayWithinTheMemoryCap() throws Exception {
+
+        for (int i = 0; i < 1000; i++) {
+            Deck otherDeck = new Deck();
+            otherDeck.shuffle();
+            testObject.getKeystream(otherDeck, 10);
+            assertTrue(testObject.size() <= 1024);
+        }
+
+        assertTrue(testObject.size() > 0);
+        assertEquals(testObject.measuredSize(), testObject.size());
+
+    }
+
+    @Test
+    public void testByteCountMatchesCachedKeystreamsUnderConcurrentLookups() throws Exception {
+
+        final Deck[] decks = new Deck[6];
+        for (int i = 0; i < decks.length; i++) {
+            decks[i] = new Deck();
+            decks[i].shuffle();
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(t);
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 2000; i++) {
+                        testObject.getKeystream(decks[random.nextInt(decks.length)], 1 + random.nextInt(600));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(testObject.measuredSize(), testObject.size());
+        assertTrue(testObject.size() <= 1024);
+
+    }
+
+    @Test
+    public void testKeystreamLongerThanTheCacheIsNotCached() throws Exception {
+
+        Keystream keystream = testObject.getKeystream(deck, 2000);
+
+        assertEquals(2000, keystream.length());
+        assertEquals(0, testObject.size());
+        assertNotSame(keystream, testObject.getKeystream(deck, 2000));
+
+    }
+}
@@ -0,0 +1,151 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+
+public class KeystreamPadTest {
+
+    private Deck deck;
+    private File padFile;
+
+    @Before
+    public void setUp() throws Exception {
+        deck = new Deck();
+        deck.shuffle();
+        padFile = File.createTempFile("keystream", ".pad");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        padFile.delete();
+    }
+
+    @Test
+    public void testPadReadsTheKeystreamAndGeneratesPastItsEnd() throws Exception {
+        byte[] expected = new byte[5000];
+        deck.copy().generateKeystream(expected, 0, expected.length);
+        KeystreamPad.create(deck, 1000, padFile);
+
+        KeystreamPad testObject = new KeystreamPad(padFile, deck.copy());
+        try {
+            assertEquals(1000, testObject.length());
+            assertTrue(testObject.isFor(deck));
+            byte[] actual = new byte[expected.length];
+            testObject.getValues(0, actual, 0, 700);
+            testObject.getValues(700, actual, 700, 2000);
+            testObject.getValues(2700, actual, 2700, 2300);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], actual[i]);
+            }
+            testObject.getValues(1500, actual, 0, 10);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(expected[1500 + i], actual[i]);
+            }
+        } finally {
+            testObject.close();
+        }
+    }
+
+    @Test
+    public void testReadingACorruptValueFails() throws Exception {
+        KeystreamPad.create(deck, 1000, padFile);
+        RandomAccessFile file = new RandomAccessFile(padFile, "rw");
+        try {
+            file.seek(file.length() - 1000 + 600);
+            file.write(53);
+        } finally {
+            file.close();
+        }
+
+        KeystreamPad testObject = new KeystreamPad(padFile, deck);
+        try {
+            testObject.getValues(0, new byte[600], 0, 600);
+            try {
+                testObject.getValues(590, new byte[20], 0, 20);
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                assertEquals("Keystream pad holds 53 at position 600, not a keystream value", e.getMessage());
+            }
+        } finally {
+            testObject.close();
+        }
+    }
+
+    @Test
+    public void testOpeningAPadWithACorruptHeaderFails() throws Exception {
+        KeystreamPad.create(deck, 100, padFile);
+        RandomAccessFile file = new RandomAccessFile(padFile, "rw");
+        try {
+            file.seek(16);
+            file.writeLong(-1);
+        } finally {
+            file.close();
+        }
+
+        try {
+            new KeystreamPad(padFile, deck);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("does not fit the file"));
+        }
+
+        KeystreamPad.create(deck, 100, padFile);
+        file = new RandomAccessFile(padFile, "rw");
+        try {
+            file.seek(78);
+            file.write(99);
+        } finally {
+            file.close();
+        }
+
+        try {
+            new KeystreamPad(padFile, deck);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("has a corrupt deck order in its header"));
+        }
+    }
+
+    @Test
+    public void testOpeningAPadForADifferentDeckFails() throws Exception {
+        KeystreamPad.create(deck, 100, padFile);
+        Deck otherDeck = new Deck();
+        otherDeck.shuffle();
+
+        try {
+            new KeystreamPad(padFile, otherDeck);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("is a keystream pad for a different deck"));
+        }
+    }
+
+    @Test
+    public void testOpeningAFileThatIsNotAPadFails() throws Exception {
+        FileOutputStream out = new FileOutputStream(padFile);
+        try {
+            out.write(new byte[300]);
+        } finally {
+            out.close();
+        }
+
+        try {
+            new KeystreamPad(padFile, deck);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertFalse(e.getMessage().contains("different deck"));
+        }
+    }
+}
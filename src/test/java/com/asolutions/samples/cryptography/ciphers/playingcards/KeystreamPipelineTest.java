@@ -0,0 +1,61 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+
+public class KeystreamPipelineTest {
+
+    @Test
+    public void testPipelineReadsTheDecksKeystream() throws Exception {
+        Random random = new Random();
+        Deck deck = new Deck();
+        deck.shuffle();
+        byte[] expected = new byte[20000];
+        deck.copy().generateKeystream(expected, 0, expected.length);
+        byte[] actual = new byte[expected.length];
+
+        KeystreamPipeline testObject = new KeystreamPipeline(deck, 64, 4);
+        try {
+            for (int position = 0; position < actual.length; ) {
+                int length = Math.min(actual.length - position, random.nextInt(300));
+                assertEquals(length, testObject.read(actual, position, length));
+                position += length;
+            }
+        } finally {
+            testObject.close();
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+        assertEquals(0, deck.getPosition());
+    }
+
+    @Test
+    public void testReadingAfterCloseFails() throws Exception {
+        KeystreamPipeline testObject = new KeystreamPipeline(new Deck(), 16, 2);
+        testObject.read(new byte[8], 0, 8);
+        testObject.close();
+
+        try {
+            testObject.read(new byte[1], 0, 1);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Keystream pipeline is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBlockCountMustBeAPowerOfTwo() throws Exception {
+        try {
+            new KeystreamPipeline(new Deck(), 16, 3);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+
+
+public class PassphraseCacheTest {
+
+    private PassphraseCache testObject;
+
+    @Before
+    public void setUp() throws Exception {
+        testObject = new PassphraseCache(2);
+    }
+
+    @Test
+    public void testCachedDeckMatchesKeyedDeck() throws Exception {
+        Deck keyed = new Deck();
+        keyed.keyWithPassphrase("CRYPTONOMICON");
+
+        Deck first = testObject.getDeck("Cryptonomicon");
+        Deck second = testObject.getDeck("crypto nomicon!");
+
+        assertEquals(keyed, first);
+        assertEquals(keyed, second);
+        assertNotSame(first, second);
+        assertEquals(1, testObject.size());
+    }
+
+    @Test
+    public void testOnlyAsciiLettersKeyTheDeck() throws Exception {
+        String passphrase = "m\u0131\u017F\u017F \u00E9t\u00DF";
+        Deck keyed = new Deck();
+        keyed.keyWithPassphrase("MT");
+
+        assertEquals("MT", Deck.lettersOf(passphrase));
+        assertEquals(keyed, testObject.getDeck(passphrase));
+        Deck direct = new Deck();
+        direct.keyWithPassphrase(passphrase);
+        assertEquals(keyed, direct);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPassphraseIsEvicted() throws Exception {
+        testObject.getDeck("ONE");
+        testObject.getDeck("TWO");
+        testObject.getDeck("ONE");
+        testObject.getDeck("THREE");
+
+        assertEquals(2, testObject.size());
+        Deck keyed = new Deck();
+        keyed.keyWithPassphrase("TWO");
+        assertEquals(keyed, testObject.getDeck("TWO"));
+        assertEquals(2, testObject.size());
+
+        testObject.clear();
+        assertEquals(0, testObject.size());
+    }
+
+    @Test
+    public void testChangingReturnedDeckDoesNotChangeCache() throws Exception {
+        Deck deck = Deck.fromPassphrase("FOO");
+        deck.shuffle();
+
+        Deck again = Deck.fromPassphrase("FOO");
+
+        assertFalse(deck.equals(again));
+        assertEquals((Integer) 8, again.getNextCard().getValue());
+    }
+}
@@ -0,0 +1,48 @@
+package com.asolutions.samples.cryptography.ciphers.playingcards;
+
+import com.asolutions.samples.cryptography.ciphers.Solitaire;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.DecoderRing;
+import com.asolutions.samples.cryptography.ciphers.crackerjackprizes.EncoderRing;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+
+public class PassphraseSearchTest {
+
+    @Test
+    public void testSearchFindsPublishedPassphrase() throws Exception {
+        List<String> candidates = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            candidates.add("WORD" + i);
+        }
+        candidates.add(3210, "CRYPTONOMICON");
+
+        List<String> found = new PassphraseSearch("SOLITAIRE", "KIRAK SFJAN").search(candidates);
+
+        assertEquals(Collections.singletonList("CRYPTONOMICON"), found);
+    }
+
+    @Test
+    public void testSearchFindsPassphraseOfEncryptedMessage() throws Exception {
+        Deck deck = new Deck();
+        deck.keyWithPassphrase("Open Sesame");
+        String plainText = "Meet me at the usual place at ten";
+        String cipherText = new Solitaire(deck, new DecoderRing(), new EncoderRing()).encrypt(plainText);
+        List<String> candidates = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            candidates.add("passphrase " + i);
+        }
+        candidates.add("open sesame");
+
+        List<String> found = new PassphraseSearch(plainText, cipherText).search(candidates);
+
+        assertEquals(Collections.singletonList("open sesame"), found);
+        assertTrue(new PassphraseSearch(plainText, cipherText).search(candidates.subList(0, 1000)).isEmpty());
+    }
+}
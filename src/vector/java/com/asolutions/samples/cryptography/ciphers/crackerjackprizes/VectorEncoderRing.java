@@ -0,0 +1,15 @@
+package com.asolutions.samples.cryptography.ciphers.crackerjackprizes;
+
+/**
+ * Encoder ring that encodes blocks of letters with the JDK Vector API.
+ * Single letters and any tail shorter than a vector use the lookup table.
+ * @author Brian Haggard
+ */
+public class VectorEncoderRing extends EncoderRing {
+
+    @Override
+    public void cipher(char[] in, int inOffset, byte[] keystream, int keystreamOffset, char[] out, int outOffset, int length) {
+        int ciphered = VectorLanes.cipher(in, inOffset, keystream, keystreamOffset, out, outOffset, length, true);
+        super.cipher(in, inOffset + ciphered, keystream, keystreamOffset + ciphered, out, outOffset + ciphered, length - ciphered);
+    }
+}
@@ -0,0 +1,71 @@
+package com.asolutions.samples.cryptography.ciphers.crackerjackprizes;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Ciphers blocks of letters with blocks of keystream values using the JDK Vector API.
+ * Letters are loaded as short lanes and keystream values as byte lanes widened to shorts,
+ * added or subtracted, and reduced mod 26 with masked subtractions.
+ * @author Brian Haggard
+ */
+class VectorLanes {
+    /**
+     * Letter lanes, the widest the platform supports
+     */
+    private static final VectorSpecies<Short> LETTERS = ShortVector.SPECIES_PREFERRED;
+
+    /**
+     * Keystream lanes, the same number of lanes as the letters at half the width
+     */
+    private static final VectorSpecies<Byte> KEYS = VectorSpecies.of(byte.class, VectorShape.forBitSize(LETTERS.vectorBitSize() / 2));
+
+    /**
+     * Number of letters in the alphabet
+     */
+    private static final short ALPHABET_LENGTH = 26;
+
+    /**
+     * Added before decoding so that letter minus card value is never negative
+     */
+    private static final short DECODE_BIAS = 3 * ALPHABET_LENGTH;
+
+    /**
+     * Ciphers as many whole vectors of letters as fit in length
+     * @param in                 characters [A-Z] to be ciphered
+     * @param inOffset           position of the first character to cipher
+     * @param keystream          card values [1-53] to cipher each character with
+     * @param keystreamOffset    position of the first card value to use
+     * @param out                array the ciphered characters are written to
+     * @param outOffset          position to write the first ciphered character to
+     * @param length             number of characters available to cipher
+     * @param encode             true to add card values, false to subtract them
+     * @return                   number of characters ciphered, a multiple of the lane count
+     */
+    static int cipher(char[] in, int inOffset, byte[] keystream, int keystreamOffset, char[] out, int outOffset, int length, boolean encode) {
+        int bound = LETTERS.loopBound(length);
+        for (int i = 0; i < bound; i += LETTERS.length()) {
+            ShortVector letters = ShortVector.fromCharArray(LETTERS, in, inOffset + i).sub((short) 'A');
+            ShortVector keys = (ShortVector) ByteVector.fromArray(KEYS, keystream, keystreamOffset + i)
+                    .convertShape(VectorOperators.B2S, LETTERS, 0);
+            ShortVector ciphered = encode ? letters.add(keys) : letters.sub(keys).add(DECODE_BIAS);
+            ciphered = reduce(reduce(reduce(ciphered)));
+            ciphered.add((short) 'A').intoCharArray(out, outOffset + i);
+        }
+        return bound;
+    }
+
+    /**
+     * Subtracts 26 from every lane that is 26 or more
+     * @param lanes    lanes to reduce
+     * @return         reduced lanes
+     */
+    private static ShortVector reduce(ShortVector lanes) {
+        VectorMask<Short> overflow = lanes.compare(VectorOperators.GE, ALPHABET_LENGTH);
+        return lanes.sub(ALPHABET_LENGTH, overflow);
+    }
+}